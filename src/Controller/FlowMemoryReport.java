@@ -0,0 +1,75 @@
+package Controller;
+
+import Utils.PropertiesReader;
+import Utils.SimulatorProperties;
+
+/**
+ * 
+ * Mede a memória ocupada por sessão TCP, criando simulações com um número crescente de sessões, sem executá-las.
+ * <p>
+ * Para cada número de sessões, todas em um único grupo com o atraso do primeiro grupo do arquivo de entrada,
+ * imprime os bytes ocupados por sessão após a criação dos servidores, receptores e dos seus primeiros envios,
+ * descontando a memória de uma simulação sem sessões.
+ * Os demais parâmetros são lidos do arquivo de entrada, como no <code>Simulator</code>.
+ * <p>
+ * Os números de sessões podem ser passados como argumentos. Por padrão, são medidos 1000, 10000 e 100000.
+ * 
+ * @see Simulator
+ */
+public class FlowMemoryReport {
+
+	public static void main(String[] args) {
+		PropertiesReader.readProperties();
+		
+		long[] flowCounts = {1000, 10000, 100000};
+		if (args.length > 0) {
+			flowCounts = new long[args.length];
+			for (int i = 0; i < args.length; i++) {
+				flowCounts[i] = Long.parseLong(args[i]);
+			}
+		}
+		
+		SimulatorProperties.serverGroupsNumber = 1;
+		SimulatorProperties.serverGroupDelay = new Long[] {SimulatorProperties.serverGroupDelay[0]};
+		
+		System.out.println("	Sessões | Bytes por sessão");
+		for (long flowCount : flowCounts) {
+			System.out.println("	" + flowCount + " | " + String.format("%.1f", bytesPerFlow(flowCount)));
+		}
+	}
+
+	/**
+	 * Cria uma simulação com o número de sessões, e mede a memória ocupada por ela em relação a uma simulação vazia
+	 * @param flowCount número de sessões TCP
+	 * @return bytes ocupados por sessão
+	 */
+	private static double bytesPerFlow(long flowCount) {
+		//Simulação sem sessões, com o roteador, o tráfego de fundo e as listas de eventos
+		SimulatorProperties.serverGroupQuantity = new Long[] {0l};
+		Simulator.newInstance().setUp();
+		long before = usedMemory();
+		
+		SimulatorProperties.serverGroupQuantity = new Long[] {flowCount};
+		Simulator simulator = Simulator.newInstance();
+		simulator.setUp();
+		long after = usedMemory();
+		
+		//Mantém a simulação alcançável até o fim da medição
+		if (simulator.getFlowTable().size() != flowCount) {
+			throw new IllegalStateException("Simulação criada com " + simulator.getFlowTable().size() + " sessões");
+		}
+		return (after - before)/(double) flowCount;
+	}
+
+	/**
+	 * Retorna a memória ocupada por objetos alcançáveis, após algumas coletas de lixo
+	 * @return bytes ocupados
+	 */
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 4; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,96 @@
+package Controller;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import models.Event;
+import Enum.EventType;
+
+/**
+ *
+ * Verificação das invariantes do protocolo durante a simulação, usada para depuração.
+ * <p>
+ * Fica desligada por padrão, e é ligada com a propriedade de sistema <code>-Dsimulador.invariantes=true</code>.
+ * Com a verificação desligada, o código protegido por <code>ENABLED</code> se reduz ao teste de um campo estático final,
+ * e as mensagens das violações só são montadas quando uma invariante falha.
+ * <p>
+ * Mantém um índice, por transmissor, dos timeouts agendados, atualizado pelo <code>Simulator</code>
+ * quando um evento é disparado, cancelado ou acontece. Assim, as verificações não precisam percorrer a lista de eventos futuros.
+ *
+ * @see Simulator
+ */
+public class InvariantChecker {
+
+	/**
+	 * Indica se as invariantes devem ser verificadas
+	 */
+	public static final boolean ENABLED = Boolean.getBoolean("simulador.invariantes");
+
+	/**
+	 * Pacotes com timeout agendado, indexados pelo transmissor que disparou o timeout
+	 */
+	private Map<Object, Set<Long>> armedTimers;
+
+	public InvariantChecker() {
+		armedTimers = new HashMap<Object, Set<Long>>();
+	}
+
+	/**
+	 * Registra um evento que acabou de ser agendado.
+	 * @param event
+	 */
+	public void scheduled(Event event) {
+		if (event.getType() == EventType.TIME_OUT) {
+			Set<Long> timers = armedTimers.get(event.getSender());
+			if (timers == null) {
+				timers = new HashSet<Long>();
+				armedTimers.put(event.getSender(), timers);
+			}
+			if (!timers.add(event.getPackageValue())) {
+				fail("dois timeouts agendados para o pacote " + event.getPackageValue() + " de " + event.getSender());
+			}
+		}
+	}
+
+	/**
+	 * Registra um evento que saiu da lista de eventos futuros, por ter acontecido ou por ter sido cancelado.
+	 * @param event
+	 */
+	public void removed(Event event) {
+		if (event.getType() == EventType.TIME_OUT) {
+			armedTimers.get(event.getSender()).remove(event.getPackageValue());
+		}
+	}
+
+	/**
+	 * Indica se há um timeout agendado para o pacote.
+	 * @param sender transmissor do pacote
+	 * @param packageValue identificador do pacote
+	 * @return <code>true</code> se houver um timeout agendado
+	 */
+	public boolean isTimerArmed(Object sender, long packageValue) {
+		Set<Long> timers = armedTimers.get(sender);
+		return timers != null && timers.contains(packageValue);
+	}
+
+	/**
+	 * Retorna o número de timeouts agendados pelo transmissor.
+	 * @param sender
+	 * @return número de timeouts agendados
+	 */
+	public int armedTimers(Object sender) {
+		Set<Long> timers = armedTimers.get(sender);
+		return timers != null ? timers.size() : 0;
+	}
+
+	/**
+	 * Interrompe a simulação por uma invariante violada.
+	 * Chamado só depois de a violação ser detectada, para que a mensagem não seja montada quando a invariante vale.
+	 * @param message descrição da violação
+	 */
+	public static void fail(String message) {
+		throw new RuntimeException("Invariante violada: " + message);
+	}
+}
@@ -0,0 +1,464 @@
+package Controller;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import models.Event;
+import models.EventPool;
+import models.Server;
+import models.interfaces.EventQueue;
+import models.queues.BinaryHeapEventQueue;
+import Enum.EventType;
+
+/**
+ *
+ * Processo lógico da simulação: uma parte dos modelos, com a sua própria lista de eventos futuros, roda de timeouts e reservatório de eventos.
+ * <p>
+ * Na execução sequencial há um único processo lógico, com todos os modelos. No modo <code>EngineMode.PARALLEL</code>,
+ * o roteador, o tráfego de fundo e os receptores formam um processo, e os servidores são divididos entre os demais,
+ * que tratam os eventos de uma mesma janela de tempo ao mesmo tempo, cada um em uma thread.
+ * <p>
+ * Os eventos de um processo para outro passam pela caixa de entrada do destino, uma fila sem bloqueio,
+ * que é esvaziada na lista de eventos futuros entre duas janelas. Os pacotes enviados pelos servidores esperam na caixa de saída
+ * do processo até não poderem mais ser cancelados, ou seja, até chegarem ao roteador, e só então seguem para o processo do roteador.
+ * <p>
+ * Os eventos disparados em uma janela recebem uma sequência provisória, e os disparos são registrados com o evento que estava sendo tratado.
+ * Ao fim da janela, <code>assignSequences</code> coloca os disparos de todos os processos na ordem em que aconteceriam na execução sequencial,
+ * de forma que os eventos empatados no tempo acontecem na mesma ordem nos dois modos.
+ *
+ * @see Simulator
+ */
+public class LogicalProcess implements Callable<Void> {
+
+	private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+
+	/**
+	 * Posição do número da janela na sequência de um evento disparado em uma janela. 
+	 * Abaixo dele, as sequências provisórias têm o bit <code>PROVISIONAL</code>, e as definitivas não.
+	 */
+	private static final int WINDOW_SHIFT = 32;
+	private static final long PROVISIONAL = 1l << 31;
+
+	/**
+	 * Simulação à qual o processo pertence
+	 */
+	private final Simulator simulator;
+
+	/**
+	 * Posição do processo na simulação, e número de processos.
+	 * As sequências provisórias dos eventos são intercaladas entre os processos, sem repetição.
+	 */
+	private final int index;
+	private final int count;
+
+	/**
+	 * Lista de eventos futuros do processo
+	 */
+	final EventQueue eventBuffer;
+
+	/**
+	 * Roda de temporização dos timeouts do processo
+	 */
+	final EventQueue timeoutWheel;
+
+	/**
+	 * Reservatório de eventos do processo.
+	 * Um evento enviado para outro processo volta para o reservatório do processo que o tratou.
+	 */
+	final EventPool eventPool;
+
+	/**
+	 * Pacotes enviados pelos servidores do processo que ainda não seguiram para o processo do roteador, ordenados pelo tempo de chegada ao roteador.
+	 * <code>null</code> nos processos sem servidores.
+	 */
+	final EventQueue outbox;
+
+	/**
+	 * Eventos enviados por outros processos, que entram na lista de eventos futuros entre duas janelas
+	 */
+	final ConcurrentLinkedQueue<Event> inbox;
+
+	/**
+	 * Número de disparos fora das janelas, usado para gerar a sequência do próximo evento. 
+	 * Só é usado no primeiro processo, que conta os disparos da execução sequencial e da preparação da execução paralela.
+	 */
+	long eventSequence;
+
+	/**
+	 * Número da janela de tempo atual, contando a partir de 1, ou 0 fora das janelas
+	 */
+	long window;
+
+	/**
+	 * Evento sendo tratado pelo processo, que é a origem dos eventos disparados durante o seu tratamento
+	 */
+	Event currentEvent;
+
+	/**
+	 * Disparos das últimas janelas tratadas pelo processo, indexados pelo número da janela. 
+	 * Os disparos de uma janela são usados até o fim da janela seguinte, como origem dos disparos dela.
+	 */
+	private final ShotLog[] shotLogs = {new ShotLog(), new ShotLog(), new ShotLog()};
+
+	/**
+	 * Fim da janela de tempo atual: o processo trata os eventos anteriores a ele
+	 */
+	long windowEnd;
+
+	/**
+	 * Estatísticas do processo: eventos e lotes processados, pacotes servidos pelo roteador e ACKs recebidos pelos servidores
+	 */
+	long processedEvents;
+	long processedBatches;
+	long routerRate;
+	long processedAcks;
+
+	/**
+	 * Instante do último lote tratado pelo processo
+	 */
+	long lastBatchTime;
+
+	/**
+	 * Tempo de CPU gasto pelo processo na última janela, em nanosegundos, ou -1 se a medição não estiver disponível
+	 */
+	long windowCpuTime;
+
+	/**
+	 * Estatísticas do lote em andamento, aplicadas de uma vez ao fim do lote: número de eventos de cada tipo,
+	 * pacotes que chegaram ao roteador de cada fluxo, e servidores cuja janela vai para o gráfico, sem repetição
+	 */
+	final int[] batchTypeCounts = new int[EventType.values().length];
+	int[] batchSent = new int[0];
+	int[] batchSenders = new int[16];
+	int batchSenderCount;
+	Server[] batchPlotted = new Server[16];
+	int batchPlottedCount;
+
+	/**
+	 * Último lote em que cada fluxo entrou em <code>batchPlotted</code>, contando a partir de 1
+	 */
+	private long[] plottedBatch = new long[0];
+
+	/**
+	 * Cria um processo lógico vazio
+	 * @param simulator simulação
+	 * @param index posição do processo
+	 * @param count número de processos da simulação
+	 * @param eventBuffer lista de eventos futuros
+	 * @param timeoutWheel roda de temporização dos timeouts
+	 * @param hasServers se o processo tem servidores, que precisam de uma caixa de saída
+	 */
+	LogicalProcess(Simulator simulator, int index, int count, EventQueue eventBuffer, EventQueue timeoutWheel, boolean hasServers) {
+		this.simulator = simulator;
+		this.index = index;
+		this.count = count;
+		this.eventBuffer = eventBuffer;
+		this.timeoutWheel = timeoutWheel;
+		eventPool = new EventPool();
+		outbox = hasServers ? new BinaryHeapEventQueue() : null;
+		//Eventos cancelados voltam para o reservatório quando são descartados
+		eventBuffer.setEventPool(eventPool);
+		timeoutWheel.setEventPool(eventPool);
+		if (outbox != null) {
+			outbox.setEventPool(eventPool);
+		}
+		inbox = new ConcurrentLinkedQueue<Event>();
+	}
+
+	/**
+	 * Começa a tratar uma janela de tempo, que passa a registrar os disparos do processo
+	 * @param window número da janela
+	 */
+	void startWindow(long window) {
+		this.window = window;
+		shotLogs[(int) (window % shotLogs.length)].clear(window);
+	}
+
+	/**
+	 * Retorna o registro dos disparos do processo em uma janela
+	 * @param window número da janela
+	 * @return registro, ou <code>null</code> se o processo não tratou a janela ou se ela é antiga demais
+	 */
+	private ShotLog shotLog(long window) {
+		ShotLog log = shotLogs[(int) (window % shotLogs.length)];
+		return log.window == window ? log : null;
+	}
+
+	/**
+	 * Registra um evento disparado na janela atual, durante o tratamento de <code>currentEvent</code>
+	 * @param event evento disparado
+	 * @return sequência provisória do evento, que vale até o fim da janela
+	 */
+	long logShot(Event event) {
+		ShotLog log = shotLog(window);
+		int record = log.add(event, currentEvent);
+		log.provisionals[record] = (window << WINDOW_SHIFT) | PROVISIONAL | ((long) record*count + index);
+		return log.provisionals[record];
+	}
+
+	/**
+	 * Retorna a sequência definitiva do evento que estava sendo tratado em um disparo.
+	 * <p>
+	 * Se a origem ainda tinha uma sequência provisória, ela foi disparada nesta janela ou na anterior, 
+	 * e a definitiva está no registro do processo que a disparou, já definida.
+	 * 
+	 * @param processes processos lógicos da simulação
+	 * @param log registro do disparo
+	 * @param record posição do disparo no registro
+	 * @return sequência da origem do disparo
+	 */
+	private static long parentSequence(LogicalProcess[] processes, ShotLog log, int record) {
+		long parent = log.parents[record];
+		if (!log.pendingParents[record]) {
+			return parent;
+		}
+		long shot = parent & (PROVISIONAL - 1);
+		LogicalProcess origin = processes[(int) (shot % processes.length)];
+		return origin.shotLog(parent >>> WINDOW_SHIFT).sequences[(int) (shot/processes.length)];
+	}
+
+	/**
+	 * Compara dois disparos de processos diferentes pela ordem em que aconteceriam na execução sequencial:
+	 * a ordem em que foram tratados os eventos que os dispararam, pelo instante, pela prioridade do tipo e pela sequência.
+	 * Os disparos de um mesmo evento estão no mesmo processo, então a comparação nunca empata.
+	 */
+	private static int compareShots(LogicalProcess[] processes, ShotLog first, int firstRecord, ShotLog second, int secondRecord) {
+		if (first.times[firstRecord] != second.times[secondRecord]) {
+			return first.times[firstRecord] < second.times[secondRecord] ? -1 : 1;
+		}
+		if (first.priorities[firstRecord] != second.priorities[secondRecord]) {
+			return first.priorities[firstRecord] < second.priorities[secondRecord] ? -1 : 1;
+		}
+		return parentSequence(processes, first, firstRecord) < parentSequence(processes, second, secondRecord) ? -1 : 1;
+	}
+
+	/**
+	 * Indica se os eventos do tipo recebem uma sequência definitiva ao fim da janela.
+	 * <p>
+	 * Só os pacotes enviados ao roteador e os timeouts são disparados por mais de um processo e desempatados entre si, 
+	 * pelo roteador e como origem dos disparos dos servidores. Os demais eventos são todos disparados pelo processo do roteador, 
+	 * e a sequência provisória, que segue a ordem dos disparos no processo, os desempata como na execução sequencial.
+	 * @param type tipo do evento
+	 * @return <code>true</code> se a sequência provisória é substituída
+	 */
+	private static boolean isReordered(EventType type) {
+		return type == EventType.PACKAGE_SENT || type == EventType.TIME_OUT;
+	}
+
+	/**
+	 * Define as sequências dos eventos disparados em uma janela por todos os processos, depois que todos trataram a janela.
+	 * <p>
+	 * Na execução sequencial, a sequência é a ordem do disparo, que segue a ordem em que são tratados os eventos que disparam.
+	 * Os registros de cada processo já estão nessa ordem, e são intercalados comparando os eventos que os dispararam, 
+	 * cuja sequência já é definitiva. As sequências definitivas da janela vêm depois das janelas anteriores e antes das seguintes, 
+	 * e seguem a mesma ordem das provisórias em cada processo, de forma que as listas de eventos futuros continuam ordenadas.
+	 * 
+	 * @param processes processos lógicos da simulação
+	 * @param window número da janela
+	 */
+	static void assignSequences(LogicalProcess[] processes, long window) {
+		ShotLog[] logs = new ShotLog[processes.length];
+		int[] positions = new int[processes.length];
+		for (int i = 0; i < processes.length; i++) {
+			logs[i] = processes[i].shotLog(window);
+		}
+		long sequence = window << WINDOW_SHIFT;
+		while (true) {
+			int next = -1;
+			for (int i = 0; i < logs.length; i++) {
+				ShotLog log = logs[i];
+				if (log == null) {
+					continue;
+				}
+				while (positions[i] < log.count && !isReordered(log.types[positions[i]])) {
+					positions[i]++;
+				}
+				if (positions[i] < log.count && (next < 0 || compareShots(processes, log, positions[i], logs[next], positions[next]) < 0)) {
+					next = i;
+				}
+			}
+			if (next < 0) {
+				break;
+			}
+			logs[next].sequences[positions[next]++] = sequence++;
+		}
+		
+		for (ShotLog log : logs) {
+			for (int record = 0; log != null && record < log.count; record++) {
+				//Um evento que já aconteceu pode ter sido reaproveitado por outro disparo, com outra sequência
+				if (isReordered(log.types[record]) && log.events[record].getSequence() == log.provisionals[record]) {
+					log.events[record].setSequence(log.sequences[record]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Retira o próximo evento a acontecer, intercalando pelo tempo a lista de eventos futuros e a roda de timeouts.
+	 * @return próximo evento
+	 */
+	Event nextEvent() {
+		Event event = eventBuffer.peek();
+		Event timeout = timeoutWheel.peek();
+		if (timeout != null && (event == null || timeout.compareTo(event) < 0)) {
+			return timeoutWheel.poll();
+		}
+		return eventBuffer.poll();
+	}
+
+	/**
+	 * Retorna o próximo evento a acontecer, sem retirá-lo da lista de eventos futuros ou da roda de timeouts.
+	 * @return próximo evento, ou <code>null</code> se não houver
+	 */
+	Event peekEvent() {
+		Event event = eventBuffer.peek();
+		Event timeout = timeoutWheel.peek();
+		if (timeout != null && (event == null || timeout.compareTo(event) < 0)) {
+			return timeout;
+		}
+		return event;
+	}
+
+	/**
+	 * Coloca na lista de eventos futuros os eventos recebidos de outros processos. Chamado entre duas janelas.
+	 */
+	void drainInbox() {
+		Event event;
+		while ((event = inbox.poll()) != null) {
+			eventBuffer.add(event);
+		}
+	}
+
+	/**
+	 * Envia para o processo do roteador os pacotes da caixa de saída que chegam a ele antes do limite.
+	 * <p>
+	 * O roteador recebe uma cópia do evento. O evento original deixa de estar agendado, de forma que o servidor não pode mais cancelá-lo,
+	 * e volta para o reservatório quando o servidor o devolver.
+	 *
+	 * @param limit tempo de chegada limite, exclusivo
+	 * @param router processo do roteador
+	 */
+	void handOff(long limit, LogicalProcess router) {
+		Event event;
+		while ((event = outbox.peek()) != null && event.getTime() < limit) {
+			outbox.poll();
+			Event copy = eventPool.acquire(event.getPackageValue(), event.getSender(), event.getTarget(), event.getTime(), event.leaveServerTime(), event.getType());
+			copy.setSequence(event.getSequence());
+			router.inbox.add(copy);
+			eventPool.release(event);
+		}
+	}
+
+	/**
+	 * Conta, no lote em andamento, um pacote do fluxo que chegou ao roteador
+	 * @param flowId fluxo do pacote
+	 */
+	void countSent(int flowId) {
+		if (flowId >= batchSent.length) {
+			batchSent = Arrays.copyOf(batchSent, Math.max(2*batchSent.length, flowId + 1));
+		}
+		if (batchSent[flowId]++ == 0) {
+			if (batchSenderCount == batchSenders.length) {
+				batchSenders = Arrays.copyOf(batchSenders, 2*batchSenders.length);
+			}
+			batchSenders[batchSenderCount++] = flowId;
+		}
+	}
+
+	/**
+	 * Marca o servidor para ter a sua janela no gráfico ao fim do lote em andamento
+	 * @param server servidor que recebeu um ACK ou sofreu um timeout
+	 */
+	void markPlotted(Server server) {
+		int flowId = server.getFlowId();
+		if (flowId >= plottedBatch.length) {
+			plottedBatch = Arrays.copyOf(plottedBatch, Math.max(2*plottedBatch.length, flowId + 1));
+		}
+		if (plottedBatch[flowId] != processedBatches + 1) {
+			plottedBatch[flowId] = processedBatches + 1;
+			if (batchPlottedCount == batchPlotted.length) {
+				batchPlotted = Arrays.copyOf(batchPlotted, 2*batchPlotted.length);
+			}
+			batchPlotted[batchPlottedCount++] = server;
+		}
+	}
+
+	/**
+	 * Trata os eventos da janela atual, na thread do pool
+	 */
+	@Override
+	public Void call() {
+		long start = cpuTime();
+		simulator.processWindow(this);
+		windowCpuTime = start < 0 ? -1 : cpuTime() - start;
+		return null;
+	}
+
+	/**
+	 * Retorna o tempo de CPU já gasto pela thread atual, que não conta o tempo em que ela esperou por outras threads
+	 * @return tempo de CPU em nanosegundos, ou -1 se a medição não estiver disponível
+	 */
+	private static long cpuTime() {
+		return THREAD_BEAN.isCurrentThreadCpuTimeSupported() ? THREAD_BEAN.getCurrentThreadCpuTime() : -1;
+	}
+
+	/**
+	 * Disparos de um processo em uma janela, na ordem em que aconteceram, com o instante, 
+	 * a prioridade do tipo e a sequência do evento que estava sendo tratado em cada um
+	 */
+	private static class ShotLog {
+		long window;
+		int count;
+		Event[] events = new Event[64];
+		EventType[] types = new EventType[64];
+		long[] times = new long[64];
+		int[] priorities = new int[64];
+		long[] parents = new long[64];
+		/**
+		 * Indica se a sequência da origem era provisória, e a definitiva deve ser buscada no registro da sua janela
+		 */
+		boolean[] pendingParents = new boolean[64];
+		long[] provisionals = new long[64];
+		long[] sequences = new long[64];
+
+		/**
+		 * Esvazia o registro para os disparos de uma nova janela
+		 * @param window número da janela
+		 */
+		void clear(long window) {
+			this.window = window;
+			Arrays.fill(events, 0, count, null);
+			count = 0;
+		}
+
+		/**
+		 * Registra um disparo
+		 * @param event evento disparado
+		 * @param parent evento que estava sendo tratado
+		 * @return posição do disparo no registro
+		 */
+		int add(Event event, Event parent) {
+			if (count == events.length) {
+				int length = 2*count;
+				events = Arrays.copyOf(events, length);
+				types = Arrays.copyOf(types, length);
+				times = Arrays.copyOf(times, length);
+				priorities = Arrays.copyOf(priorities, length);
+				parents = Arrays.copyOf(parents, length);
+				pendingParents = Arrays.copyOf(pendingParents, length);
+				provisionals = Arrays.copyOf(provisionals, length);
+				sequences = Arrays.copyOf(sequences, length);
+			}
+			events[count] = event;
+			types[count] = event.getType();
+			times[count] = parent.getTime();
+			priorities[count] = parent.getType().getPriority();
+			parents[count] = parent.getSequence();
+			pendingParents[count] = (parent.getSequence() & PROVISIONAL) != 0 && isReordered(parent.getType());
+			return count++;
+		}
+	}
+}
@@ -0,0 +1,174 @@
+package Controller;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import models.Server;
+import models.ServerGroup;
+import Enum.AckMode;
+import Enum.EngineMode;
+import Enum.TimeoutMode;
+import Enum.TransmissionMode;
+import Utils.ConfidenceInterval;
+import Utils.PropertiesReader;
+import Utils.SimulatorProperties;
+
+/**
+ * 
+ * Executa a mesma simulação em dois modos de operação e imprime lado a lado os intervalos de confiança da vazão de cada grupo.
+ * <p>
+ * Serve para verificar que uma alteração de implementação no simulador não altera os resultados do modelo além da tolerância.
+ * Os demais parâmetros são lidos do arquivo de entrada, como no <code>Simulator</code>.
+ * <p>
+ * Modos comparados:
+ * <p>
+ * timeout		<code>TimeoutMode.PER_PACKAGE</code> x <code>TimeoutMode.PER_FLOW</code>
+ * <p>
+ * train		<code>TransmissionMode.PER_PACKAGE</code> x <code>TransmissionMode.TRAIN</code>
+ * <p>
+ * delayedAck	<code>AckMode.IMMEDIATE</code> x <code>AckMode.DELAYED</code>
+ * <p>
+ * engine		<code>EngineMode.SEQUENTIAL</code> x <code>EngineMode.PARALLEL</code>, que devem ter exatamente os mesmos resultados
+ * 
+ * @see Simulator
+ */
+public class ModeComparison {
+
+	/**
+	 * Diferença relativa máxima aceita entre as médias dos dois modos, em porcentagem,
+	 * quando os intervalos de confiança não se sobrepõem.
+	 */
+	private static final double TOLERANCE = 5;
+
+	public static void main(String[] args) {
+		PropertiesReader.readProperties();
+		
+		String comparison = args.length > 0 ? args[0] : "timeout";
+		if (comparison.equals("timeout")) {
+			SimulatorProperties.timeoutMode = TimeoutMode.PER_PACKAGE;
+			Simulator first = runSimulation();
+			SimulatorProperties.timeoutMode = TimeoutMode.PER_FLOW;
+			Simulator second = runSimulation();
+			
+			printComparison(TimeoutMode.PER_PACKAGE.name(), first, TimeoutMode.PER_FLOW.name(), second);
+		} else if (comparison.equals("train")) {
+			SimulatorProperties.transmissionMode = TransmissionMode.PER_PACKAGE;
+			Simulator first = runSimulation();
+			SimulatorProperties.transmissionMode = TransmissionMode.TRAIN;
+			Simulator second = runSimulation();
+			
+			printComparison(TransmissionMode.PER_PACKAGE.name(), first, TransmissionMode.TRAIN.name(), second);
+		} else if (comparison.equals("delayedAck")) {
+			SimulatorProperties.ackMode = AckMode.IMMEDIATE;
+			Simulator first = runSimulation();
+			SimulatorProperties.ackMode = AckMode.DELAYED;
+			Simulator second = runSimulation();
+			
+			printComparison(AckMode.IMMEDIATE.name(), first, AckMode.DELAYED.name(), second);
+		} else if (comparison.equals("engine")) {
+			SimulatorProperties.engineMode = EngineMode.SEQUENTIAL;
+			Simulator first = runSimulation();
+			SimulatorProperties.engineMode = EngineMode.PARALLEL;
+			Simulator second = runSimulation();
+			SimulatorProperties.engineMode = EngineMode.SEQUENTIAL;
+			
+			printComparison(EngineMode.SEQUENTIAL.name(), first, EngineMode.PARALLEL.name(), second);
+			checkIdentical(first, second);
+			System.out.println("	Aceleração | " + String.format("%.2f", first.getElapsedTime()/(double) Math.max(1, second.getElapsedTime())) 
+					+ " | paralelismo das janelas " + Simulator.formatParallelism(second.getParallelism()));
+		} else {
+			throw new IllegalArgumentException("Comparação desconhecida: " + comparison);
+		}
+	}
+
+	/**
+	 * Executa uma simulação do início com os valores atuais de <code>SimulatorProperties</code>.
+	 * @return simulador executado
+	 */
+	private static Simulator runSimulation() {
+		Simulator simulator = Simulator.newInstance();
+		simulator.run();
+		return simulator;
+	}
+
+	/**
+	 * Imprime a vazão de cada grupo nas duas simulações, indicando se os resultados são compatíveis.
+	 * <p>
+	 * Os resultados de um grupo são considerados compatíveis se os intervalos de confiança se sobrepõem,
+	 * ou se a diferença relativa entre as médias não passa de <code>TOLERANCE</code>.
+	 * 
+	 * @param firstName nome do primeiro modo
+	 * @param first simulação do primeiro modo
+	 * @param secondName nome do segundo modo
+	 * @param second simulação do segundo modo
+	 */
+	private static void printComparison(String firstName, Simulator first, String secondName, Simulator second) {
+		Map<Long, List<Double>> firstMeans = groupMeansByDelay(first);
+		Map<Long, List<Double>> secondMeans = groupMeansByDelay(second);
+		
+		System.out.println("	================ COMPARAÇÃO DE MODOS =================");
+		System.out.println("	Grupo | " + firstName + " | " + secondName + " | Diferença | Resultado");
+		for (Entry<Long, List<Double>> groupMean : firstMeans.entrySet()) {
+			List<Double> otherMean = secondMeans.get(groupMean.getKey());
+			if (otherMean == null) {
+				continue;
+			}
+			double mean = ConfidenceInterval.getMean(groupMean.getValue());
+			double halfWidth = ConfidenceInterval.getHalfWidth(groupMean.getValue());
+			double otherMeanValue = ConfidenceInterval.getMean(otherMean);
+			double otherHalfWidth = ConfidenceInterval.getHalfWidth(otherMean);
+			
+			double difference = 100*(otherMeanValue - mean)/mean;
+			boolean overlap = Math.abs(otherMeanValue - mean) <= halfWidth + otherHalfWidth;
+			boolean compatible = overlap || Math.abs(difference) <= TOLERANCE;
+			
+			System.out.println("	Grupo " + groupMean.getKey() + " | " + ConfidenceInterval.getConfidenceInterval(groupMean.getValue()) 
+					+ " | " + ConfidenceInterval.getConfidenceInterval(otherMean) 
+					+ " | " + String.format("%.2f%%", difference) + " | " + (compatible ? "compatível" : "INCOMPATÍVEL"));
+		}
+		System.out.println("	Roteador | " + first.getRouterThroughput() + " | " + second.getRouterThroughput());
+		System.out.println("	Eventos processados | " + first.getProcessedEvents() + " | " + second.getProcessedEvents());
+		System.out.println("	ACKs | " + first.getProcessedAcks() + " | " + second.getProcessedAcks());
+		System.out.println("	Tempo de simulação(ms) | " + first.getElapsedTime() + " | " + second.getElapsedTime());
+	}
+
+	/**
+	 * Verifica que as duas simulações tiveram exatamente os mesmos resultados: as médias de cada servidor em cada rodada, 
+	 * o número de eventos e de ACKs, e a vazão do roteador.
+	 * 
+	 * @param first primeira simulação
+	 * @param second segunda simulação
+	 * @throws IllegalStateException se algum resultado for diferente
+	 */
+	private static void checkIdentical(Simulator first, Simulator second) {
+		if (first.getProcessedEvents() != second.getProcessedEvents() || first.getProcessedAcks() != second.getProcessedAcks()
+				|| first.getRouterThroughput() != second.getRouterThroughput()) {
+			throw new IllegalStateException("Modos processaram " + first.getProcessedEvents() + " e " + second.getProcessedEvents() + " eventos");
+		}
+		Map<Integer, List<Double>> secondMeans = new TreeMap<Integer, List<Double>>();
+		for (Entry<Server, List<Double>> serverMean : second.getMeans().entrySet()) {
+			secondMeans.put(serverMean.getKey().getFlowId(), serverMean.getValue());
+		}
+		for (Entry<Server, List<Double>> serverMean : first.getMeans().entrySet()) {
+			if (!serverMean.getValue().equals(secondMeans.get(serverMean.getKey().getFlowId()))) {
+				throw new IllegalStateException("Médias diferentes para " + serverMean.getKey());
+			}
+		}
+		System.out.println("	Resultados | idênticos");
+	}
+
+	/**
+	 * Agrupa as médias dos servidores pelo atraso do grupo, que identifica o grupo entre simulações diferentes.
+	 * @param simulator
+	 * @return médias dos servidores por atraso do grupo
+	 */
+	private static Map<Long, List<Double>> groupMeansByDelay(Simulator simulator) {
+		Map<Long, List<Double>> groupMeans = new TreeMap<Long, List<Double>>();
+		for (Entry<ServerGroup, List<Double>> groupMean : simulator.getGroupMeans().entrySet()) {
+			groupMeans.put(groupMean.getKey().getDelay(), groupMean.getValue());
+		}
+		return groupMeans;
+	}
+}
@@ -0,0 +1,132 @@
+package Controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import models.Server;
+import models.ServerGroup;
+import Utils.ConfidenceInterval;
+import Utils.PropertiesReader;
+import Utils.SimulatorProperties;
+
+/**
+ *
+ * Executa a simulação em réplicas independentes, em paralelo, até que a precisão desejada seja atingida.
+ * <p>
+ * Cada réplica é uma instância própria do <code>Simulator</code>, com as suas listas de eventos, sessões e geradores de números aleatórios,
+ * executada do início ao fim em uma thread de um <code>ForkJoinPool</code>. Os parâmetros de <code>SimulatorProperties</code> são
+ * compartilhados pelas réplicas, que apenas os leem.
+ * <p>
+ * Cada réplica descarta a sua fase transiente e mede um número fixo de rodadas. As médias das rodadas de todas as réplicas são reunidas
+ * por servidor, e novas levas de réplicas são executadas até que a precisão de todos os servidores seja de pelo menos 5%.
+ * Os intervalos de confiança são impressos como no <code>Simulator</code>.
+ * <p>
+ * As sementes das réplicas são geradas a partir da semente do arquivo de entrada, na ordem das réplicas,
+ * de forma que o resultado não depende do número de threads.
+ * <p>
+ * Argumentos, opcionais: número de réplicas por leva (padrão: número de processadores),
+ * rodadas medidas por réplica (padrão: <code>DEFAULT_ROUNDS</code>) e número de threads (padrão: número de réplicas por leva).
+ *
+ * @see Simulator
+ */
+public class Replications {
+
+	/**
+	 * Número padrão de rodadas medidas por réplica
+	 */
+	private static final int DEFAULT_ROUNDS = 2;
+
+	/**
+	 * Precisão desejada dos intervalos de confiança, em porcentagem
+	 */
+	private static final double PRECISION = 5;
+
+	public static void main(String[] args) throws Exception {
+		PropertiesReader.readProperties();
+
+		int replications = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ROUNDS;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : replications;
+
+		Random seeds = SimulatorProperties.seed != null ? new Random(SimulatorProperties.seed) : new Random();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+
+		long realTime = System.currentTimeMillis();
+		//Simulação onde são reunidas as médias de todas as réplicas: a primeira réplica executada
+		Simulator merged = null;
+		int executed = 0;
+		long processedEvents = 0;
+		try {
+			while (merged == null || merged.getPrecision() > PRECISION) {
+				List<Callable<Simulator>> wave = new ArrayList<Callable<Simulator>>();
+				for (int i = 0; i < replications; i++) {
+					wave.add(new Replication(seeds.nextLong(), rounds));
+				}
+				for (Future<Simulator> result : pool.invokeAll(wave)) {
+					Simulator replication = result.get();
+					if (merged == null) {
+						merged = replication;
+					} else {
+						merged.addMeans(replication);
+					}
+					processedEvents += replication.getProcessedEvents();
+					executed++;
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+		long elapsedTime = System.currentTimeMillis() - realTime;
+
+		System.out.println("Réplicas: " + executed + " (" + rounds + " rodadas cada, " + threads + " threads)");
+		System.out.println("Tempo de simulação(ms): " + elapsedTime);
+		System.out.println("Eventos processados: " + processedEvents + " (" + processedEvents*1000/Math.max(1, elapsedTime) + " eventos/s)");
+
+		//Imprime intervalo de confiança de cada servidor
+		for (Entry<Server, List<Double>> means : merged.getMeans().entrySet()) {
+			System.out.println(means.getKey() + ": " + ConfidenceInterval.getConfidenceInterval(means.getValue()));
+		}
+		//Imprime intervalos de confiança por grupo
+		for (Entry<ServerGroup, List<Double>> groupMean : merged.getGroupMeans().entrySet()) {
+			if (groupMean.getValue().size() > 1) {
+				System.out.println(groupMean.getKey() + ": " + ConfidenceInterval.getConfidenceInterval(groupMean.getValue()));
+			}
+		}
+	}
+
+	/**
+	 * Réplica independente da simulação, executada em uma thread do pool
+	 */
+	private static class Replication implements Callable<Simulator> {
+
+		private final long seed;
+		private final int rounds;
+
+		/**
+		 * @param seed semente dos geradores de números aleatórios da réplica
+		 * @param rounds número de rodadas medidas
+		 */
+		public Replication(long seed, int rounds) {
+			this.seed = seed;
+			this.rounds = rounds;
+		}
+
+		/**
+		 * Cria a instância do simulador da thread atual e executa a réplica
+		 * @return simulação executada
+		 */
+		@Override
+		public Simulator call() {
+			Simulator simulator = Simulator.newInstance();
+			simulator.setSeed(seed);
+			simulator.setMaxRounds(rounds);
+			simulator.run();
+			return simulator;
+		}
+	}
+}
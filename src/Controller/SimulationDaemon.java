@@ -0,0 +1,514 @@
+package Controller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import models.Server;
+import models.ServerGroup;
+import Utils.ConfidenceInterval;
+import Utils.PropertiesReader;
+import Utils.Scenario;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ *
+ * Servidor local de simulações: uma JVM que fica no ar recebendo cenários por HTTP, em JSON, e os executa em um pool de threads,
+ * evitando o custo de iniciar a JVM e de aquecer o JIT a cada cenário.
+ * <p>
+ * Os cenários partem dos valores do arquivo de entrada, lido uma vez ao iniciar, como no <code>Simulator</code>.
+ * Cada cenário é um objeto JSON com os nomes dos campos de <code>Scenario</code> e os valores nas unidades do arquivo de entrada,
+ * como em <code>Sweep</code>. Os grupos de servidores recebem uma lista, ou um texto com os valores separados por vírgula.
+ * O campo opcional <code>rodadas</code> fixa o número de rodadas medidas, em vez de executar até atingir a precisão desejada.
+ * <p>
+ * <code>POST /cenarios</code>	coloca o cenário na fila, e responde com o seu identificador
+ * <p>
+ * <code>GET /cenarios/{id}</code>	responde com o estado do cenário (<code>fila</code>, <code>executando</code>, <code>concluido</code> ou <code>erro</code>)
+ * e, ao terminar, com as estatísticas que o <code>Simulator</code> escreve no arquivo de estatísticas
+ * <p>
+ * Um cenário terminado é descartado depois do tempo de expiração dos resultados, contado do fim da execução,
+ * ou <code>READ_GRACE</code> depois da primeira consulta ao seu resultado, o que vier antes. A partir daí, a consulta responde 404.
+ * Os cenários expirados são descartados a cada requisição.
+ * <p>
+ * Exemplo: <code>curl -d '{"serverGroupQuantity": [5, 5], "bufferLength": 60, "seed": 42}' localhost:8080/cenarios</code>
+ * <p>
+ * Argumentos, opcionais: porta (padrão: <code>DEFAULT_PORT</code>), número de threads (padrão: número de processadores)
+ * e tempo de expiração dos resultados, em segundos (padrão: <code>DEFAULT_RESULT_TTL</code>).
+ * O servidor só aceita conexões da própria máquina.
+ *
+ * @see Scenario
+ */
+public class SimulationDaemon {
+
+	/**
+	 * Porta padrão do servidor
+	 */
+	private static final int DEFAULT_PORT = 8080;
+
+	/**
+	 * Tempo de expiração padrão dos resultados, em segundos
+	 */
+	private static final long DEFAULT_RESULT_TTL = 600;
+
+	/**
+	 * Tempo em que um resultado continua disponível depois da primeira consulta, em milissegundos, 
+	 * para que o cliente possa repetir uma consulta cuja resposta se perdeu
+	 */
+	private static final long READ_GRACE = 60*1000l;
+
+	/**
+	 * Cenário base, com os valores do arquivo de entrada
+	 */
+	private final Scenario base;
+
+	/**
+	 * Threads que executam os cenários
+	 */
+	private final ExecutorService workers;
+
+	/**
+	 * Tempo de expiração dos resultados, em milissegundos
+	 */
+	private final long resultTtl;
+
+	/**
+	 * Cenários recebidos, pelo identificador
+	 */
+	private final Map<Integer, Job> jobs = new ConcurrentHashMap<Integer, Job>();
+
+	/**
+	 * Identificador do próximo cenário recebido
+	 */
+	private final AtomicInteger nextId = new AtomicInteger(1);
+
+	public static void main(String[] args) throws IOException {
+		PropertiesReader.readProperties();
+
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		long resultTtl = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_RESULT_TTL;
+
+		final SimulationDaemon daemon = new SimulationDaemon(Scenario.fromProperties(), threads, resultTtl*1000);
+		HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/cenarios", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				daemon.handle(exchange);
+			}
+		});
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.start();
+		System.out.println("Servidor de simulações em http://localhost:" + port + "/cenarios (threads: " + threads + ", expiração dos resultados: " + resultTtl + " s)");
+	}
+
+	/**
+	 * @param base cenário do arquivo de entrada
+	 * @param threads número de threads que executam os cenários
+	 * @param resultTtl tempo de expiração dos resultados, em milissegundos
+	 */
+	public SimulationDaemon(Scenario base, int threads, long resultTtl) {
+		this.base = base;
+		this.resultTtl = resultTtl;
+		workers = Executors.newFixedThreadPool(threads);
+	}
+
+	/**
+	 * Trata uma requisição HTTP em <code>/cenarios</code>
+	 * @param exchange requisição
+	 * @throws IOException
+	 */
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			evictExpired();
+			String path = exchange.getRequestURI().getPath();
+			String method = exchange.getRequestMethod();
+			if (path.equals("/cenarios") || path.equals("/cenarios/")) {
+				if (!method.equals("POST")) {
+					respond(exchange, 405, error("Use POST para enviar um cenário"));
+					return;
+				}
+				Job job = submit(new String(readBody(exchange.getRequestBody()), "UTF-8"));
+				respond(exchange, 202, job.toJson());
+			} else {
+				if (!method.equals("GET")) {
+					respond(exchange, 405, error("Use GET para consultar um cenário"));
+					return;
+				}
+				Job job = null;
+				try {
+					job = jobs.get(Integer.valueOf(path.substring("/cenarios/".length())));
+				} catch (NumberFormatException e) {
+					//Identificador inválido: cenário não encontrado
+				}
+				if (job == null) {
+					respond(exchange, 404, error("Cenário não encontrado ou expirado: " + path));
+				} else {
+					respond(exchange, 200, job.toJson());
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			respond(exchange, 400, error(String.valueOf(e.getMessage())));
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Cria o cenário descrito no JSON e o coloca na fila
+	 * @param json objeto JSON do cenário
+	 * @return cenário na fila
+	 * @throws IllegalArgumentException se o JSON ou algum parâmetro for inválido
+	 */
+	private Job submit(String json) {
+		Scenario scenario = base.copy();
+		int rounds = 0;
+		for (Entry<String, String> parameter : new JsonReader(json).readObject().entrySet()) {
+			if (parameter.getKey().equals("rodadas")) {
+				rounds = Integer.parseInt(parameter.getValue());
+			} else {
+				scenario.set(parameter.getKey(), parameter.getValue());
+			}
+		}
+
+		Job job = new Job(nextId.getAndIncrement(), scenario, rounds, resultTtl);
+		jobs.put(job.id, job);
+		workers.submit(job);
+		return job;
+	}
+
+	/**
+	 * Descarta os cenários terminados cujo resultado expirou
+	 */
+	private void evictExpired() {
+		long now = System.currentTimeMillis();
+		for (Iterator<Job> iterator = jobs.values().iterator(); iterator.hasNext();) {
+			if (iterator.next().isExpired(now)) {
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Lê todo o corpo da requisição
+	 */
+	private static byte[] readBody(InputStream input) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while ((read = input.read(buffer)) > 0) {
+			body.write(buffer, 0, read);
+		}
+		return body.toByteArray();
+	}
+
+	/**
+	 * Envia a resposta JSON
+	 */
+	private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+		byte[] body = json.getBytes("UTF-8");
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length);
+		OutputStream output = exchange.getResponseBody();
+		output.write(body);
+		output.close();
+	}
+
+	/**
+	 * Monta a resposta JSON de um erro
+	 */
+	private static String error(String message) {
+		return "{\"erro\": " + quote(message) + "}";
+	}
+
+	/**
+	 * Escreve um texto como string JSON
+	 */
+	private static String quote(String text) {
+		StringBuilder quoted = new StringBuilder("\"");
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '"' || c == '\\') {
+				quoted.append('\\').append(c);
+			} else if (c < ' ') {
+				quoted.append(String.format("\\u%04x", (int) c));
+			} else {
+				quoted.append(c);
+			}
+		}
+		return quoted.append('"').toString();
+	}
+
+	/**
+	 * Escreve um número como número JSON, ou <code>null</code> se não for finito
+	 */
+	private static String number(Double value) {
+		return value == null || value.isNaN() || value.isInfinite() ? "null" : value.toString();
+	}
+
+	/**
+	 * Cenário recebido, executado em uma thread do pool
+	 */
+	private static class Job implements Runnable {
+
+		private final int id;
+		private final Scenario scenario;
+		private final int rounds;
+		private final long resultTtl;
+
+		/**
+		 * Estado do cenário, e resultado ou mensagem de erro quando termina
+		 */
+		private volatile String state = "fila";
+		private volatile String result;
+
+		/**
+		 * Instante em que o cenário expira, em milissegundos, ou 0 enquanto não termina
+		 */
+		private volatile long expiresAt;
+
+		/**
+		 * @param id identificador do cenário
+		 * @param scenario parâmetros do cenário
+		 * @param rounds número de rodadas medidas, ou 0 para executar até atingir a precisão
+		 * @param resultTtl tempo de expiração do resultado, em milissegundos
+		 */
+		public Job(int id, Scenario scenario, int rounds, long resultTtl) {
+			this.id = id;
+			this.scenario = scenario;
+			this.rounds = rounds;
+			this.resultTtl = resultTtl;
+		}
+
+		/**
+		 * Cria a instância do simulador da thread atual e executa o cenário.
+		 * <p>
+		 * Qualquer falha, inclusive um <code>Error</code> como falta de memória, leva o cenário ao estado <code>erro</code>,
+		 * em vez de deixá-lo para sempre em <code>executando</code>.
+		 */
+		@Override
+		public void run() {
+			state = "executando";
+			String finalState;
+			try {
+				Simulator simulator = Simulator.newInstance();
+				simulator.setScenario(scenario);
+				simulator.setMaxRounds(rounds);
+				simulator.run();
+				result = statistics(simulator);
+				finalState = "concluido";
+			} catch (Throwable e) {
+				result = quote(String.valueOf(e));
+				finalState = "erro";
+			}
+			//A expiração é definida antes do estado final, para que toda consulta que veja o resultado a encontre
+			expiresAt = System.currentTimeMillis() + resultTtl;
+			state = finalState;
+		}
+
+		/**
+		 * Indica se o cenário terminou e o seu resultado expirou
+		 * @param now instante atual, em milissegundos
+		 * @return <code>true</code> se o cenário pode ser descartado
+		 */
+		public boolean isExpired(long now) {
+			long currentExpiresAt = expiresAt;
+			return currentExpiresAt > 0 && currentExpiresAt <= now;
+		}
+
+		/**
+		 * Monta o JSON com as estatísticas da simulação, as mesmas do arquivo de estatísticas
+		 * @param simulator simulação executada
+		 * @return objeto JSON
+		 */
+		private static String statistics(Simulator simulator) {
+			StringBuilder json = new StringBuilder("{");
+			json.append("\"tempo_ms\": ").append(simulator.getElapsedTime());
+			json.append(", \"eventos\": ").append(simulator.getProcessedEvents());
+			json.append(", \"eventos_por_instante\": ").append(number(simulator.getAverageBatchSize()));
+			json.append(", \"roteador\": ").append(simulator.getRouterThroughput());
+
+			json.append(", \"servidores\": [");
+			String separator = "";
+			for (Entry<Server, List<Double>> means : simulator.getMeans().entrySet()) {
+				json.append(separator).append("{\"servidor\": ").append(means.getKey().getFlowId() + 1);
+				json.append(", \"vazao\": ").append(number(ConfidenceInterval.getMean(means.getValue())));
+				json.append(", \"ic\": ").append(number(ConfidenceInterval.getHalfWidth(means.getValue())));
+				json.append(", \"rodadas\": ").append(means.getValue().size()).append("}");
+				separator = ", ";
+			}
+
+			json.append("], \"grupos\": [");
+			separator = "";
+			for (Entry<ServerGroup, List<Double>> groupMean : simulator.getGroupMeans().entrySet()) {
+				json.append(separator).append("{\"atraso_ms\": ").append(groupMean.getKey().getDelay()/(1000l*1000l));
+				json.append(", \"vazao\": ").append(number(ConfidenceInterval.getMean(groupMean.getValue())));
+				json.append(", \"ic\": ").append(number(ConfidenceInterval.getHalfWidth(groupMean.getValue()))).append("}");
+				separator = ", ";
+			}
+			return json.append("]}").toString();
+		}
+
+		/**
+		 * Monta o JSON com o estado do cenário.
+		 * Se o cenário já tiver terminado, o resultado é entregue, e passa a expirar até <code>READ_GRACE</code> depois desta consulta.
+		 * @return objeto JSON
+		 */
+		public String toJson() {
+			String currentState = state;
+			String currentResult = result;
+			StringBuilder json = new StringBuilder("{\"id\": ").append(id).append(", \"estado\": ").append(quote(currentState));
+			if (currentState.equals("concluido")) {
+				json.append(", \"resultado\": ").append(currentResult);
+			} else if (currentState.equals("erro")) {
+				json.append(", \"erro\": ").append(currentResult);
+			}
+			if (currentState.equals("concluido") || currentState.equals("erro")) {
+				expiresAt = Math.min(expiresAt, System.currentTimeMillis() + READ_GRACE);
+			}
+			return json.append("}").toString();
+		}
+	}
+
+	/**
+	 * Leitor de um objeto JSON simples, cujos valores são números, textos, ou listas deles.
+	 * As listas são convertidas em texto com os valores separados por vírgula, como os grupos de servidores no <code>Sweep</code>.
+	 */
+	private static class JsonReader {
+
+		private final String json;
+		private int position;
+
+		public JsonReader(String json) {
+			this.json = json;
+		}
+
+		/**
+		 * Lê o objeto
+		 * @return valores do objeto, como texto, pelo nome
+		 * @throws IllegalArgumentException se o JSON for inválido
+		 */
+		public Map<String, String> readObject() {
+			Map<String, String> values = new LinkedHashMap<String, String>();
+			expect('{');
+			if (peek() == '}') {
+				position++;
+			} else {
+				do {
+					String name = readString();
+					expect(':');
+					values.put(name, readValue());
+				} while (next() == ',');
+				position--;
+				expect('}');
+			}
+			if (peek() != 0) {
+				throw invalid();
+			}
+			return values;
+		}
+
+		/**
+		 * Lê um valor: número, texto, booleano ou lista
+		 */
+		private String readValue() {
+			char c = peek();
+			if (c == '"') {
+				return readString();
+			}
+			if (c == '[') {
+				position++;
+				StringBuilder list = new StringBuilder();
+				if (peek() == ']') {
+					position++;
+					return "";
+				}
+				do {
+					list.append(list.length() > 0 ? "," : "").append(readValue());
+				} while (next() == ',');
+				position--;
+				expect(']');
+				return list.toString();
+			}
+			int start = position;
+			while (position < json.length() && ",}] \t\r\n".indexOf(json.charAt(position)) < 0) {
+				position++;
+			}
+			if (start == position) {
+				throw invalid();
+			}
+			return json.substring(start, position);
+		}
+
+		/**
+		 * Lê um texto entre aspas
+		 */
+		private String readString() {
+			expect('"');
+			StringBuilder text = new StringBuilder();
+			while (position < json.length() && json.charAt(position) != '"') {
+				char c = json.charAt(position++);
+				if (c == '\\' && position < json.length()) {
+					c = json.charAt(position++);
+					if (c == 'u' && position + 4 <= json.length()) {
+						c = (char) Integer.parseInt(json.substring(position, position + 4), 16);
+						position += 4;
+					} else if (c == 'n') {
+						c = '\n';
+					} else if (c == 't') {
+						c = '\t';
+					}
+				}
+				text.append(c);
+			}
+			expect('"');
+			return text.toString();
+		}
+
+		/**
+		 * Retorna o próximo caractere que não é espaço, sem avançar, ou 0 no fim do texto
+		 */
+		private char peek() {
+			while (position < json.length() && Character.isWhitespace(json.charAt(position))) {
+				position++;
+			}
+			return position < json.length() ? json.charAt(position) : 0;
+		}
+
+		/**
+		 * Retorna o próximo caractere que não é espaço, avançando
+		 */
+		private char next() {
+			char c = peek();
+			position++;
+			return c;
+		}
+
+		/**
+		 * Avança sobre o caractere esperado
+		 */
+		private void expect(char expected) {
+			if (next() != expected) {
+				throw invalid();
+			}
+		}
+
+		private IllegalArgumentException invalid() {
+			return new IllegalArgumentException("JSON inválido na posição " + position);
+		}
+	}
+}
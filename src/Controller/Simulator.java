@@ -1,26 +1,46 @@
 package Controller;
 
+import java.awt.GraphicsEnvironment;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import models.BackgroundTraffic;
 import models.Event;
-import models.PackageModel;
+import models.FlowTable;
 import models.Receiver;
 import models.Router;
+import models.SackOption;
 import models.Server;
 import models.ServerGroup;
+import models.interfaces.EventQueue;
 import models.interfaces.Listener;
+import models.queues.BinaryHeapEventQueue;
+import models.queues.CalendarEventQueue;
+import models.queues.TimingWheel;
 import views.SimulatorView;
+import Enum.EngineMode;
+import Enum.EventQueueType;
 import Enum.EventType;
+import Enum.TraceLevel;
+import Enum.TransmissionMode;
+import Utils.AllocationCounter;
 import Utils.ConfidenceInterval;
 import Utils.PropertiesReader;
+import Utils.Scenario;
 import Utils.SimulatorProperties;
+import Utils.Tracer;
 import Utils.WriteToFile;
 
 /**
@@ -41,11 +61,14 @@ public class Simulator {
 	private boolean outputFileMode = true;
 	
 	/**
-	 * Mapa para registrar os objetos que escutarão um determinado evento.
+	 * Mapa para registrar os objetos que escutarão todos os eventos de um determinado tipo.
 	 * <p>
 	 * Uma chave no map é um enumerável do tipo <code>EventType</code>,
 	 * cujo valor armazena um conjunto com referências para todos os objetos 
 	 * que se registraram para escutar este tipo de evento.
+	 * <p>
+	 * Objetos que só se interessam pelos eventos da própria sessão TCP não se registram aqui: 
+	 * recebem apenas os eventos endereçados a eles, através do destinatário do evento.
 	 */
 	private Map<EventType, List<Listener>> listeners;
 	
@@ -55,24 +78,102 @@ public class Simulator {
 	private Map<Server, Map<Long, Integer>> data;
 	
 	/**
-	 * Canal de eventos para comunicação interna entre as classes.
+	 * Processos lógicos da simulação, cada um com a sua lista de eventos futuros, que sempre retorna primeiro o próximo evento a acontecer,
+	 * a sua roda de temporização dos eventos do tipo <code>EventType.TIME_OUT</code>, e o seu reservatório de eventos,
+	 * para que os eventos que já aconteceram sejam reaproveitados pelos próximos <code>shotEvent</code>.
+	 * <p>
+	 * Os timeouts ficam fora da lista de eventos futuros, já que quase todos são cancelados antes de acontecer.
+	 * <p>
+	 * Na execução sequencial há um único processo. No modo <code>EngineMode.PARALLEL</code>, o primeiro processo tem o roteador,
+	 * o tráfego de fundo e os receptores, e os servidores são divididos entre os demais.
+	 */
+	private LogicalProcess[] processes;
+	
+	/**
+	 * Processo lógico único da execução sequencial, ou <code>null</code> no modo <code>EngineMode.PARALLEL</code>,
+	 * em que o processo de cada thread fica em <code>currentProcess</code>
+	 */
+	private LogicalProcess process;
+	
+	/**
+	 * Processo lógico tratado pela thread atual, no modo <code>EngineMode.PARALLEL</code>
+	 */
+	private final ThreadLocal<LogicalProcess> currentProcess = new ThreadLocal<LogicalProcess>();
+	
+	/**
+	 * Menor atraso dos grupos de servidores, em nanosegundos, no modo <code>EngineMode.PARALLEL</code>.
+	 * Um pacote leva pelo menos esse tempo do servidor ao roteador, e um ACK do receptor ao servidor.
+	 * <p>
+	 * As janelas de tempo têm metade desse tamanho. Os servidores tratam uma janela enquanto o processo do roteador trata a anterior,
+	 * e assim um evento tratado em uma janela nunca afeta outro processo antes do fim da janela seguinte.
+	 * Um pacote só segue para o roteador quando os servidores já passaram do instante da sua chegada, e não podem mais cancelá-lo.
+	 */
+	private long lookahead;
+	
+	/**
+	 * Número de janelas de tempo tratadas até agora no modo <code>EngineMode.PARALLEL</code>
 	 */
-	private List<Event> eventBuffer;
+	private long windowCount;
+	
+	/**
+	 * Indica se a rodada atual é a última da simulação, em que os pontos do gráfico são guardados
+	 */
+	private boolean lastRound;
+	
+	/**
+	 * Verificação das invariantes do protocolo, usada apenas quando <code>InvariantChecker.ENABLED</code>
+	 */
+	private InvariantChecker invariantChecker;
+	
+	/**
+	 * Gerador das sementes dos geradores aleatórios da simulação, quando uma semente é fornecida no arquivo de entrada
+	 */
+	private Random seeds;
+	
+	/**
+	 * Tamanho do tick da roda de temporização dos timeouts, em nanosegundos
+	 */
+	private static final long TIMEOUT_WHEEL_TICK = 1000000l;
 	
 	/**
 	 * Lista de servidores existentes na simulação
 	 */
 	private List<Server> servers;
 	
+	/**
+	 * Tabela com o estado das sessões TCP, indexada pelo identificador do fluxo de cada servidor
+	 */
+	private FlowTable flows;
+	
 	/**
 	 * Tráfego de fundo que será usado para congestionar o tráfego das sessões TCP.
 	 */
 	private BackgroundTraffic backgroundTraffic;
 	
 	/**
-	 * Instancia única da classe Simulator controlada por singleton
+	 * Instancia única da classe Simulator controlada por singleton, uma por thread.
+	 * <p>
+	 * Os objetos da simulação guardam a instância ao serem criados, e todos rodam na thread que a executa.
+	 * Assim, simulações independentes podem ser executadas ao mesmo tempo em threads diferentes, como em <code>Replications</code>.
 	 */
-	private static Simulator instance;
+	private static final ThreadLocal<Simulator> instance = new ThreadLocal<Simulator>();
+	
+	/**
+	 * Parâmetros do roteador, do tráfego de fundo, dos grupos de servidores e das rodadas desta simulação.
+	 * Se não for definido antes de <code>setUp()</code>, é criado com os valores atuais de <code>SimulatorProperties</code>.
+	 */
+	private Scenario scenario;
+	
+	/**
+	 * Semente dos geradores de números aleatórios desta simulação, ou <code>null</code> para usar a do cenário
+	 */
+	private Long seed;
+	
+	/**
+	 * Número de rodadas medidas, após a fase transiente, ao fim do qual a simulação termina. 
+	 * Se for 0, a simulação termina quando a precisão desejada for atingida.
+	 */
+	private int maxRounds;
 	
 	/** 
 	 * Map com as médias das taxas de transmissão das rodadas de simulação para cada servidor 
@@ -80,31 +181,75 @@ public class Simulator {
 	private Map<Server, List<Double>> means;
 	
 	/** 
-	 * Map com as taxas de transmissão de cada servidor 
+	 * Taxas de transmissão de cada servidor na rodada atual, indexadas pelo identificador do fluxo do servidor
 	 * */
-	private Map<Server, Integer> serversRate;
+	private int[] serversRate;
 	
 	/** 
 	 * Taxa de atendimento do roteador. Guarda a soma dos atendimentos até o momento
 	 * */
-	private Integer routerRate;
-
+	private long routerRate;
+	
+	/**
+	 * Número de eventos processados pelo simulador
+	 */
+	private long processedEvents;
+	
+	/**
+	 * Número de lotes de eventos processados pelo simulador. Um lote reúne todos os eventos de um mesmo instante
+	 */
+	private long processedBatches;
+	
+	/**
+	 * Número de ACKs recebidos pelos servidores
+	 */
+	private long processedAcks;
+	
+	/**
+	 * Eventos criados e reaproveitados pelos reservatórios de eventos na última execução
+	 */
+	private long createdEvents;
+	private long reusedEvents;
+	
+	/**
+	 * Tempo real gasto na última execução da simulação, em milissegundos
+	 */
+	private long elapsedTime;
+	
+	/**
+	 * Tempo de CPU dos processos lógicos nas janelas da execução paralela, em nanosegundos: a soma de todos os processos,
+	 * e a soma, janela a janela, do processo mais demorado, que é o caminho crítico da execução.
+	 * Negativos se a medição não estiver disponível
+	 */
+	private long windowsCpuTime;
+	private long criticalPathCpuTime;
+	
+	/**
+	 * Tempo simulado ao final da última execução, em nanosegundos
+	 */
+	private long simulatedTime;
+	
+	/**
+	 * Bytes alocados por evento na última execução, em toda a simulação e em regime permanente
+	 */
+	private double bytesPerEvent;
+	private double steadyStateBytesPerEvent;
 	
 	
 	public static Simulator getInstance() {
-		if (instance == null) {
-			instance = new Simulator();
+		Simulator simulator = instance.get();
+		if (simulator == null) {
+			simulator = new Simulator();
+			instance.set(simulator);
 		}
-		return instance;
+		return simulator;
 	}
 
 	private Simulator() {
-		listeners = new HashMap<EventType, List<Listener>>();
+		listeners = new EnumMap<EventType, List<Listener>>(EventType.class);
 		data = new HashMap<Server, Map <Long, Integer>>();
 		servers = new ArrayList<Server>();
-		eventBuffer = new ArrayList<Event>();
-		means = new HashMap<Server, List<Double>>();
-		serversRate = new HashMap<Server, Integer>();
+		means = new LinkedHashMap<Server, List<Double>>();
 	}
 
 	public static void main(String[] args) throws IOException {
@@ -112,161 +257,730 @@ public class Simulator {
 		
 		//Leitura das variáveis de entrada
 		PropertiesReader.readProperties();
+		simulator.run();
+		simulator.printResults();
+	}
+
+	/**
+	 * Descarta a instância atual e cria uma nova, para que uma nova simulação seja executada do início
+	 * com os valores atuais de <code>SimulatorProperties</code>.
+	 * 
+	 * @return nova instância única do simulador na thread atual
+	 */
+	public static Simulator newInstance() {
+		Simulator simulator = new Simulator();
+		instance.set(simulator);
+		return simulator;
+	}
+
+	/**
+	 * Cria as listas de eventos, o roteador, o tráfego de fundo e as sessões TCP, com os valores lidos em <code>SimulatorProperties</code>,
+	 * agendando os primeiros envios. Chamado no início de <code>run()</code>.
+	 */
+	public void setUp() {
+		invariantChecker = new InvariantChecker();
+		if (scenario == null) {
+			scenario = Scenario.fromProperties();
+		}
+		if (SimulatorProperties.engineMode == EngineMode.PARALLEL) {
+			createProcesses(Integer.getInteger("simulador.threads", Runtime.getRuntime().availableProcessors()));
+		} else {
+			process = new LogicalProcess(this, 0, 1, createEventQueue(SimulatorProperties.eventQueueType), new TimingWheel(TIMEOUT_WHEEL_TICK), false);
+			processes = new LogicalProcess[] {process};
+		}
+		Long runSeed = seed != null ? seed : scenario.seed;
+		seeds = runSeed != null ? new Random(runSeed) : null;
+		flows = new FlowTable(scenario.getServersNumber());
 		initSimulator();
+		serversRate = new int[servers.size()];
+	}
+
+	/**
+	 * Cria os processos lógicos do modo <code>EngineMode.PARALLEL</code>: o do roteador, e um para cada partição dos servidores.
+	 * @param partitions número de partições dos servidores
+	 * @throws IllegalStateException se o modo não puder ser usado com os parâmetros da simulação
+	 */
+	private void createProcesses(int partitions) {
+		if (SimulatorProperties.transmissionMode != TransmissionMode.PER_PACKAGE || InvariantChecker.ENABLED) {
+			throw new IllegalStateException("Execução paralela não suporta trens de pacotes nem a verificação das invariantes");
+		}
+		lookahead = Long.MAX_VALUE;
+		for (int i = 0; i < scenario.getServerGroupsNumber(); i++) {
+			if (scenario.serverGroupQuantity[i] > 0) {
+				lookahead = Math.min(lookahead, scenario.serverGroupDelay[i]);
+			}
+		}
+		if (lookahead < 2) {
+			throw new IllegalStateException("Execução paralela precisa de atraso de pelo menos 2 ns em todos os grupos de servidores");
+		}
+		
+		processes = new LogicalProcess[partitions + 1];
+		windowCount = 0;
+		for (int i = 0; i < processes.length; i++) {
+			processes[i] = new LogicalProcess(this, i, processes.length, createEventQueue(SimulatorProperties.eventQueueType), new TimingWheel(TIMEOUT_WHEEL_TICK), i > 0);
+		}
+		process = null;
+	}
+
+	/**
+	 * Retorna o processo lógico do fluxo, onde fica o seu servidor
+	 * @param flowId identificador do fluxo
+	 * @return processo
+	 */
+	private LogicalProcess getFlowProcess(int flowId) {
+		if (processes.length == 1) {
+			return processes[0];
+		}
+		return processes[1 + flowId % (processes.length - 1)];
+	}
+
+	/**
+	 * Retorna o processo lógico tratado pela thread atual
+	 * @return processo
+	 */
+	private LogicalProcess process() {
+		LogicalProcess current = process;
+		return current != null ? current : currentProcess.get();
+	}
+
+	/**
+	 * Executa a simulação, com os valores lidos em <code>SimulatorProperties</code>, até que a precisão desejada seja atingida.
+	 * <p>
+	 * Ao final, as médias de cada rodada ficam disponíveis em <code>getMeans()</code> e <code>getGroupMeans()</code>.
+	 */
+	public void run() {
+		setUp();
 		
 		//Inicialização de variáveis===========
 		//=====================================
 		Event event = null;
 		//Tempo de
-		Long time  = 0l;
+		long time  = 0l;
 		//Tempo total da simulação, que é igual ao tempo de uma rodada
-		Long roundDuration = SimulatorProperties.totalSimulationTime;
+		long roundDuration = scenario.totalSimulationTime;
 		//Indica se esta será a última rodada da simulação
-		Boolean lastRound = false;
+		lastRound = false;
 		//Indica que é a primeira rodada, ou seja, a fase transiente 
-		Boolean firstRound = true;
+		boolean firstRound = true;
 		//Guarda o tempo de término da rodada atual
-		Long currentRoundEndTime = SimulatorProperties.transientTime;
+		long currentRoundEndTime = scenario.transientTime;
+		//Número de rodadas medidas até agora
+		int measuredRounds = 0;
+		//Início da próxima janela de tempo da execução paralela
+		long windowStart = 0l;
 
-		simulator.routerRate = 0;
-		Collections.sort(simulator.eventBuffer);
+		routerRate = 0;
+		processedEvents = 0;
+		processedBatches = 0;
+		processedAcks = 0;
+		createdEvents = 0;
+		reusedEvents = 0;
+		windowsCpuTime = 0;
+		criticalPathCpuTime = 0;
+		
+		//Medições de alocação: toda a simulação, e regime permanente, do fim da fase transiente ao início da última rodada.
+		//Só medem a thread atual, então não estão disponíveis na execução paralela
+		long startBytes = process != null ? AllocationCounter.allocatedBytes() : -1;
+		long steadyStartBytes = -1;
+		long steadyStartEvents = 0;
+		long steadyEndBytes = -1;
+		long steadyEndEvents = 0;
+		
+		//Threads dos processos lógicos da execução paralela
+		ExecutorService pool = process == null ? Executors.newFixedThreadPool(processes.length - 1) : null;
 		//=====================================
 		//=====================================
 
 		//Execução do simulador
-		Long realTime = System.currentTimeMillis();
-		while (simulator.eventBuffer.size() > 0) {
-			
-			//Pega primeiro evento que deve acontecer da lista de eventos, já removendo-o da lista.
-			event = simulator.eventBuffer.remove(0);
+		long realTime = System.currentTimeMillis();
+		try {
+			while (true) {
+				if (process != null) {
+					//Todos os eventos do mesmo instante são tratados como um lote: o simulador pula no tempo uma única vez,
+					//e as estatísticas e o fim da rodada são verificados ao final do lote
+					event = process.peekEvent();
+					if (event == null) {
+						//Não restam eventos, ou restavam apenas eventos cancelados
+						break;
+					}
+					long batchTime = event.getTime();
+					if (batchTime < time) {
+						throw new RuntimeException("Evento no passado");
+					}
+					//Tempo atual passa a ser o tempo do lote, ou seja, simulador pula no tempo.
+					time = batchTime;
+					processBatch(process, batchTime);
+				} else {
+					//Na execução paralela, o simulador trata em janelas de tempo todos os eventos até o fim da rodada. 
+					//Depois, como na execução sequencial, o primeiro lote após o fim da rodada ainda conta nela, e é tratado sozinho
+					runWindows(pool, windowStart, currentRoundEndTime + 1);
+					long batchTime = nextEventTime();
+					if (batchTime == Long.MAX_VALUE) {
+						break;
+					}
+					time = batchTime;
+					runInstant(pool, batchTime);
+					windowStart = batchTime + 1;
+				}
+				
+				if(currentRoundEndTime < time) { //Se terminou a rodada
+					if (lastRound) {				
+						break;
+					}else {
+						backgroundTraffic.reseed();
+						//Atualiza as taxas se não for fase transiente
+						if (!firstRound) {
+							lastRound = true;
+							for (Server server : servers) {
+								if (means.get(server) == null) {								
+									means.put(server, new ArrayList<Double>());
+								}
+								//Adiciona a média desta rodada para este servidor no map de médias
+								means.get(server).add(serversRate[server.getFlowId()]*1000*1000000d/roundDuration);
+								//Não deixa simulação terminar até que precisão seja pelo menos 5%
+								if (ConfidenceInterval.getPrecision(means.get(server)) > 5) {
+									lastRound = false;
+								}
+							}																		
+							measuredRounds++;
+							if (maxRounds > 0) {
+								//Com número de rodadas fixo, a precisão não termina a simulação, e não há rodada para o gráfico
+								if (measuredRounds >= maxRounds) {
+									break;
+								}
+								lastRound = false;
+							}
+						}
+						//Acrescenta uma rodada na execução do simulador, aumentando o tempo do fim da simulação
+						currentRoundEndTime += roundDuration;
+						
+						//Reinicia as taxas dos servidores
+						Arrays.fill(serversRate, 0);
+						
+						if (firstRound) {
+							steadyStartBytes = startBytes < 0 ? -1 : AllocationCounter.allocatedBytes();
+							steadyStartEvents = sumProcessedEvents();
+						} else if (!lastRound) {
+							steadyEndBytes = startBytes < 0 ? -1 : AllocationCounter.allocatedBytes();
+							steadyEndEvents = sumProcessedEvents();
+						}
+						firstRound = false;
+					}
+				}
+			}
+		} finally {
+			if (pool != null) {
+				pool.shutdown();
+			}
+		}
+		elapsedTime = System.currentTimeMillis() - realTime;
+		simulatedTime = lastBatchTime();
+		for (LogicalProcess logicalProcess : processes) {
+			processedEvents += logicalProcess.processedEvents;
+			processedBatches += logicalProcess.processedBatches;
+			routerRate += logicalProcess.routerRate;
+			processedAcks += logicalProcess.processedAcks;
+			createdEvents += logicalProcess.eventPool.getCreatedEvents();
+			reusedEvents += logicalProcess.eventPool.getReusedEvents();
+		}
+		//Termina de escrever o trace antes dos resultados
+		Tracer.flush();
+		bytesPerEvent = AllocationCounter.bytesPerEvent(startBytes, startBytes < 0 ? -1 : AllocationCounter.allocatedBytes(), processedEvents);
+		steadyStateBytesPerEvent = AllocationCounter.bytesPerEvent(steadyStartBytes, steadyEndBytes, steadyEndEvents - steadyStartEvents);
+	}
+
+	/**
+	 * Trata, como um lote, todos os eventos de um processo lógico que acontecem em um mesmo instante,
+	 * incluindo os agendados para este instante durante o lote.
+	 * @param logicalProcess processo lógico
+	 * @param batchTime instante do lote
+	 */
+	private void processBatch(LogicalProcess logicalProcess, long batchTime) {
+		Event event;
+		int batchEvents = 0;
+		//Os eventos do mesmo instante saem da lista agrupados por tipo, e os ouvintes do tipo são buscados uma vez por grupo
+		EventType batchType = null;
+		List<Listener> eventListeners = null;
+		
+		//Pega o próximo evento do lote, já removendo-o da lista. Eventos agendados para o instante atual durante o lote também entram nele.
+		while ((event = logicalProcess.peekEvent()) != null && event.getTime() == batchTime) {
+			event = logicalProcess.nextEvent();
+			logicalProcess.currentEvent = event;
+			batchEvents++;
 			
-			if (event.getTime() < time) {
-				throw new RuntimeException("Evento no passado");
+			if (InvariantChecker.ENABLED) {
+				invariantChecker.removed(event);
 			}
 			
+			if (event.getType() != batchType) {
+				batchType = event.getType();
+				eventListeners = listeners.get(batchType);
+			}
 			//Notifica todos os objetos que escutam eventos desse tipo
-			for (Listener listener : simulator.listeners.get(event.getType())) {
-				listener.Listen(event);
+			if (eventListeners != null) {
+				for (int i = 0; i < eventListeners.size(); i++) {
+					eventListeners.get(i).Listen(event);
+				}
+			}
+			//Notifica o destinatário do evento
+			if (event.getTarget() != null) {
+				event.getTarget().Listen(event);
 			}
-				
-			//Tempo atual passa a ser o tempo do evento atual, ou seja, simulador pula no tempo.
-			time = event.getTime();
 			
-			//Atualização dos dados estatísticos
-			switch (event.getType()) {
-			case PACKAGE_DELIVERED:
-				//Atualiza a taxa do roteador nessa rodada - Incrementa a quantidade de pacotes servidos neste milissegundo
-				simulator.routerRate++;
-				break;
-				
-			case PACKAGE_SENT:
-				if (event.getSender().getClass().equals(Server.class)) {
-					Server server = getEventServer(event);
-					if (simulator.serversRate.get(server) == null) {
-						simulator.serversRate.put(server, 0);
-					}
-					//Atualiza a taxa do servidor atual nessa rodada - Incrementa a quantidade de pacotes enviados do servidor que enviou o pacote atual
-					simulator.serversRate.put(server, simulator.serversRate.get(server) + 1);
-				}
-				break;
-				
-			case ACK:
-				if (lastRound) {		
-					//Quando um ack é recebido, é adicionado um ponto no gráfico (apenas na última rodada)
-					simulator.updatePlot(time, getEventServer(event));
-				}
-				break;
-				
-			case TIME_OUT:
-				if (lastRound) {
-					//Quando um time_out acontece, é adicionado um ponto no gráfico (apenas na última rodada)
-					simulator.updatePlot(time, getEventServer(event));					
+			//Contagem do lote por tipo e por fluxo, aplicada aos dados estatísticos ao fim do lote
+			logicalProcess.batchTypeCounts[batchType.ordinal()]++;
+			if (batchType == EventType.PACKAGE_SENT && event.getSender() instanceof Server) {
+				logicalProcess.countSent(((Server) event.getSender()).getFlowId());
+			} else if (lastRound && (batchType == EventType.ACK || batchType == EventType.TIME_OUT)) {
+				logicalProcess.markPlotted(getEventServer(event));
+			}
+			
+			if (event.getTrain() != null && event.advanceTrain()) {
+				//O próximo pacote do trem chega ao roteador pelo mesmo evento, agendado outra vez
+				schedule(logicalProcess, event);
+			} else {
+				//Evento já foi tratado, e pode ser reaproveitado se ninguém o reteve
+				logicalProcess.eventPool.release(event);
+			}
+		}
+		applyBatchStatistics(logicalProcess, batchTime, batchEvents);
+	}
+
+	/**
+	 * Atualiza os dados estatísticos com as contagens do lote, de uma vez para cada tipo e para cada fluxo.
+	 * <p>
+	 * A taxa de cada servidor recebe os pacotes que chegaram ao roteador no lote, e cada servidor que recebeu um ACK 
+	 * ou sofreu um timeout ganha um único ponto no gráfico (apenas na última rodada), com a janela do fim do lote.
+	 * 
+	 * @param logicalProcess processo lógico do lote
+	 * @param batchTime instante do lote
+	 * @param batchEvents número de eventos do lote
+	 */
+	private void applyBatchStatistics(LogicalProcess logicalProcess, long batchTime, int batchEvents) {
+		int[] typeCounts = logicalProcess.batchTypeCounts;
+		logicalProcess.processedEvents += batchEvents;
+		logicalProcess.lastBatchTime = batchTime;
+		logicalProcess.routerRate += typeCounts[EventType.PACKAGE_DELIVERED.ordinal()];
+		logicalProcess.processedAcks += typeCounts[EventType.ACK.ordinal()];
+		Arrays.fill(typeCounts, 0);
+		
+		for (int i = 0; i < logicalProcess.batchSenderCount; i++) {
+			int flowId = logicalProcess.batchSenders[i];
+			serversRate[flowId] += logicalProcess.batchSent[flowId];
+			logicalProcess.batchSent[flowId] = 0;
+		}
+		logicalProcess.batchSenderCount = 0;
+		
+		for (int i = 0; i < logicalProcess.batchPlottedCount; i++) {
+			updatePlot(batchTime, logicalProcess.batchPlotted[i]);
+			logicalProcess.batchPlotted[i] = null;
+		}
+		logicalProcess.batchPlottedCount = 0;
+		
+		//Só depois dos pontos do gráfico, que usam o número do lote para não repetir servidores
+		logicalProcess.processedBatches++;
+	}
+
+	/**
+	 * Retorna o número de eventos processados até agora por todos os processos lógicos
+	 * @return eventos processados
+	 */
+	private long sumProcessedEvents() {
+		long events = 0;
+		for (LogicalProcess logicalProcess : processes) {
+			events += logicalProcess.processedEvents;
+		}
+		return events;
+	}
+
+	/**
+	 * Retorna o instante do último lote tratado por qualquer processo lógico
+	 * @return instante do último lote
+	 */
+	private long lastBatchTime() {
+		long lastBatchTime = 0;
+		for (LogicalProcess logicalProcess : processes) {
+			lastBatchTime = Math.max(lastBatchTime, logicalProcess.lastBatchTime);
+		}
+		return lastBatchTime;
+	}
+
+	/**
+	 * Retorna o instante do próximo evento de qualquer processo lógico da execução paralela, com todos os processos parados.
+	 * <p>
+	 * Os eventos recebidos de outros processos entram antes nas listas de eventos futuros, 
+	 * e os pacotes nas caixas de saída dos servidores contam pela sua chegada ao roteador.
+	 * 
+	 * @return instante do próximo evento, ou <code>Long.MAX_VALUE</code> se não houver mais eventos
+	 */
+	private long nextEventTime() {
+		long nextTime = Long.MAX_VALUE;
+		for (LogicalProcess logicalProcess : processes) {
+			logicalProcess.drainInbox();
+			Event event = logicalProcess.peekEvent();
+			if (event != null) {
+				nextTime = Math.min(nextTime, event.getTime());
+			}
+			event = logicalProcess.outbox != null ? logicalProcess.outbox.peek() : null;
+			if (event != null) {
+				nextTime = Math.min(nextTime, event.getTime());
+			}
+		}
+		return nextTime;
+	}
+
+	/**
+	 * Trata em janelas de tempo os eventos de todos os processos lógicos anteriores ao fim, que já inclui o fim da rodada.
+	 * <p>
+	 * A cada passo, os processos dos servidores tratam uma janela, começando no próximo evento de qualquer processo,
+	 * enquanto o processo do roteador trata a janela anterior dos servidores. Depois do passo, os eventos disparados na janela 
+	 * do roteador recebem a sequência definitiva, e os pacotes que chegam ao roteador antes do fim da janela dos servidores 
+	 * seguem para o processo do roteador. No último passo, só o roteador trata a sua janela.
+	 * 
+	 * @param pool threads dos processos
+	 * @param start início da primeira janela
+	 * @param end fim da última janela, exclusivo
+	 */
+	private void runWindows(ExecutorService pool, long start, long end) {
+		LogicalProcess router = processes[0];
+		LogicalProcess[] servers = Arrays.copyOfRange(processes, 1, processes.length);
+		long windowLength = lookahead/2;
+		long routerWindow = 0;
+		long serversEnd = start;
+		while (true) {
+			long windowStart = Math.max(serversEnd, nextEventTime());
+			long serversWindow = 0;
+			List<LogicalProcess> running = new ArrayList<LogicalProcess>();
+			if (windowStart < end) {
+				serversWindow = ++windowCount;
+				for (LogicalProcess logicalProcess : servers) {
+					logicalProcess.startWindow(serversWindow);
+					logicalProcess.windowEnd = Math.min(windowStart + windowLength, end);
+					running.add(logicalProcess);
 				}
-				break;
-			default:
+			}
+			if (routerWindow != 0) {
+				router.startWindow(routerWindow);
+				router.windowEnd = serversEnd;
+				running.add(router);
+			}
+			if (running.isEmpty()) {
 				break;
 			}
+			runStep(pool, running);
 			
-			//Reordenação da lista de eventos conforme sua ordem de acontecimento.
-			Collections.sort(simulator.eventBuffer);	
-			
-			
-			if(currentRoundEndTime < time) { //Se terminou a rodada
-				if (lastRound) {				
+			if (routerWindow != 0) {
+				LogicalProcess.assignSequences(processes, routerWindow);
+			}
+			serversEnd = serversWindow != 0 ? Math.min(windowStart + windowLength, end) : end;
+			for (LogicalProcess logicalProcess : servers) {
+				logicalProcess.handOff(serversEnd, router);
+			}
+			routerWindow = serversWindow;
+		}
+	}
+
+	/**
+	 * Trata o lote do instante em todos os processos lógicos ao mesmo tempo, depois que todos os eventos anteriores foram tratados.
+	 * <p>
+	 * Os pacotes que chegam ao roteador no instante seguem antes para o processo do roteador. Nenhum evento disparado no lote 
+	 * acontece no mesmo instante em outro processo, e um servidor que tenta cancelar um pacote que chega ao roteador no instante 
+	 * não o encontra, como na execução sequencial, em que o pacote chegou antes.
+	 * 
+	 * @param pool threads dos processos
+	 * @param batchTime instante do lote
+	 */
+	private void runInstant(ExecutorService pool, long batchTime) {
+		long window = ++windowCount;
+		for (LogicalProcess logicalProcess : processes) {
+			if (logicalProcess.outbox != null) {
+				logicalProcess.handOff(batchTime + 1, processes[0]);
+			}
+		}
+		for (LogicalProcess logicalProcess : processes) {
+			logicalProcess.drainInbox();
+			logicalProcess.startWindow(window);
+			logicalProcess.windowEnd = batchTime + 1;
+		}
+		runStep(pool, Arrays.asList(processes));
+		LogicalProcess.assignSequences(processes, window);
+	}
+
+	/**
+	 * Trata os eventos de alguns processos lógicos até o fim das suas janelas, cada processo em uma thread do pool.
+	 * @param pool threads dos processos
+	 * @param running processos que tratam uma janela
+	 */
+	private void runStep(ExecutorService pool, List<LogicalProcess> running) {
+		for (LogicalProcess logicalProcess : processes) {
+			logicalProcess.windowCpuTime = 0;
+		}
+		try {
+			for (Future<Void> result : pool.invokeAll(running)) {
+				result.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Simulação interrompida", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Erro em um processo lógico", e.getCause());
+		}
+		
+		balanceEventPools();
+		
+		long windowCpuTime = 0;
+		long slowestCpuTime = 0;
+		for (LogicalProcess logicalProcess : running) {
+			if (logicalProcess.windowCpuTime < 0 || windowsCpuTime < 0) {
+				windowsCpuTime = -1;
+				criticalPathCpuTime = -1;
+				return;
+			}
+			windowCpuTime += logicalProcess.windowCpuTime;
+			slowestCpuTime = Math.max(slowestCpuTime, logicalProcess.windowCpuTime);
+		}
+		windowsCpuTime += windowCpuTime;
+		criticalPathCpuTime += slowestCpuTime;
+	}
+
+	/**
+	 * Divide igualmente os eventos livres entre os reservatórios dos processos lógicos, entre duas janelas.
+	 * <p>
+	 * Um evento volta para o reservatório do processo que o tratou. Sem a divisão, os pacotes descartados pelo roteador 
+	 * se acumulariam no reservatório do seu processo, enquanto os processos dos servidores continuariam criando eventos novos.
+	 */
+	private void balanceEventPools() {
+		int freeEvents = 0;
+		for (LogicalProcess logicalProcess : processes) {
+			freeEvents += logicalProcess.eventPool.size();
+		}
+		int share = freeEvents/processes.length;
+		for (LogicalProcess source : processes) {
+			for (LogicalProcess target : processes) {
+				int surplus = source.eventPool.size() - share;
+				if (surplus <= 0) {
 					break;
-				}else {
-					simulator.backgroundTraffic.reseed();
-					//Atualiza as taxas se não for fase transiente
-					if (!firstRound) {
-						lastRound = true;
-						for (Entry<Server, Integer> serverRate : simulator.serversRate.entrySet()) {
-							Server server = serverRate.getKey();
-							if (simulator.means.get(server) == null) {								
-								simulator.means.put(server, new ArrayList<Double>());
-							}
-							//Adiciona a média desta rodada para este servidor no map de médias
-							simulator.means.get(server).add(serverRate.getValue()*1000*1000000d/roundDuration);
-							//Não deixa simulação terminar até que precisão seja pelo menos 5%
-							if (ConfidenceInterval.getPrecision(simulator.means.get(server)) > 5) {
-								lastRound = false;
-							}
-						}																		
-					}
-					//Acrescenta uma rodada na execução do simulador, aumentando o tempo do fim da simulação
-					currentRoundEndTime += roundDuration;
-					
-					//Reinicia as taxas dos servidores
-					for (Server server : simulator.serversRate.keySet()) {
-						simulator.serversRate.put(server, 0);
-					}
-					firstRound = false;
 				}
+				int lack = share - target.eventPool.size();
+				if (lack > 0) {
+					source.eventPool.moveTo(target.eventPool, Math.min(surplus, lack));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Trata os eventos de um processo lógico anteriores ao fim da janela atual, na thread do pool.
+	 * @param logicalProcess processo lógico
+	 */
+	void processWindow(LogicalProcess logicalProcess) {
+		currentProcess.set(logicalProcess);
+		Event event;
+		while ((event = logicalProcess.peekEvent()) != null && event.getTime() < logicalProcess.windowEnd) {
+			processBatch(logicalProcess, event.getTime());
+		}
+	}
+
+	/**
+	 * Escreve os resultados da simulação no arquivo de estatísticas, ou no console, e plota o gráfico.
+	 * @throws IOException
+	 */
+	public void printResults() throws IOException {
+		Long eventsPerSecond = processedEvents*1000/Math.max(1, elapsedTime);
+		if(outputFileMode) {
+			WriteToFile.writeln("Tempo de simulação(ms): " + elapsedTime);
+			WriteToFile.writeln("Eventos processados: " + processedEvents + " (" + eventsPerSecond + " eventos/s, " + SimulatorProperties.eventQueueType + ")");
+			WriteToFile.writeln("Eventos por instante: " + String.format("%.2f", getAverageBatchSize()));
+			WriteToFile.writeln("Eventos criados: " + createdEvents + " (reaproveitados: " + reusedEvents + ")");
+			WriteToFile.writeln("Bytes alocados por evento: " + formatBytes(bytesPerEvent) + " (regime permanente: " + formatBytes(steadyStateBytesPerEvent) + ")");
+			if (process == null) {
+				WriteToFile.writeln("Paralelismo das janelas: " + formatParallelism(getParallelism()) + " (processos de servidores: " + (processes.length - 1) + ")");
+			}
+			if (Tracer.getDroppedRecords() > 0) {
+				WriteToFile.writeln("Registros de trace descartados: " + Tracer.getDroppedRecords());
+			}
+		} else {
+			System.out.println("Tempo de simulação(ms): " + elapsedTime);
+			System.out.println("Eventos processados: " + processedEvents + " (" + eventsPerSecond + " eventos/s, " + SimulatorProperties.eventQueueType + ")");
+			System.out.println("Eventos por instante: " + String.format("%.2f", getAverageBatchSize()));
+			System.out.println("Eventos criados: " + createdEvents + " (reaproveitados: " + reusedEvents + ")");
+			System.out.println("Bytes alocados por evento: " + formatBytes(bytesPerEvent) + " (regime permanente: " + formatBytes(steadyStateBytesPerEvent) + ")");
+			if (process == null) {
+				System.out.println("Paralelismo das janelas: " + formatParallelism(getParallelism()) + " (processos de servidores: " + (processes.length - 1) + ")");
+			}
+			if (Tracer.getDroppedRecords() > 0) {
+				System.out.println("Registros de trace descartados: " + Tracer.getDroppedRecords());
 			}
 		}
-		if(instance.outputFileMode)
-			WriteToFile.writeln("Tempo de simulação(ms): " + (System.currentTimeMillis() - realTime));
-		else System.out.println("Tempo de simulação(ms): " + (System.currentTimeMillis() - realTime));
 		//WriteToFile.close();
 
 		//======================================
 		//          FIM DA SIMULAÇÃO
 		//======================================
 		
-		if(instance.outputFileMode)
-			WriteToFile.writeln(simulator.means);
-		else	System.out.println(simulator.means);
-		//Map com medias das taxas por grupo e servidor
-		Map<ServerGroup, List<Double>> groupMeans = new HashMap<ServerGroup, List<Double>>();
+		if(outputFileMode)
+			WriteToFile.writeln(means);
+		else	System.out.println(means);
 		
-		//Imprime intervalo de confiança de cada servidor, e preenche medias dos grupos
-		for (Entry<Server, List<Double>> means : simulator.means.entrySet()) {
-			ServerGroup group = means.getKey().getGroup();
-			if (groupMeans.get(group) == null) {
-				groupMeans.put(group, new ArrayList<Double>());
-			}
-			groupMeans.get(group).add(ConfidenceInterval.getMean(means.getValue()));
-			
-			if(instance.outputFileMode)
+		//Imprime intervalo de confiança de cada servidor
+		for (Entry<Server, List<Double>> means : this.means.entrySet()) {
+			if(outputFileMode)
 				WriteToFile.writeln(means.getKey()+": "+ConfidenceInterval.getConfidenceInterval(means.getValue()));			
 			else System.out.println("Servidor "+means.getKey()+": "+ConfidenceInterval.getConfidenceInterval(means.getValue()));			
 		}
 		
 		//Imprime intervalos de confiança por grupo
-			for (Entry<ServerGroup, List<Double>> groupMean : groupMeans.entrySet()) {
+			for (Entry<ServerGroup, List<Double>> groupMean : getGroupMeans().entrySet()) {
 				if (groupMean.getValue().size() > 1){ 
-					if(instance.outputFileMode)
+					if(outputFileMode)
 						WriteToFile.writeln(groupMean.getKey() +": "+ConfidenceInterval.getConfidenceInterval(groupMean.getValue()));
 					else System.out.println(groupMean.getKey() +": "+ConfidenceInterval.getConfidenceInterval(groupMean.getValue()));
 				}
 			}
-		//Plota gráfico
-		new SimulatorView(simulator.data);
-		if(instance.outputFileMode)
-			WriteToFile.writeln("Vazão do roteador: " + simulator.routerRate*1000*1000000l/time);
-		else System.out.println(simulator.routerRate*1000*1000000l/time);
+		//Plota gráfico, se houver tela
+		if (!GraphicsEnvironment.isHeadless()) {
+			new SimulatorView(data);
+		}
+		if(outputFileMode)
+			WriteToFile.writeln("Vazão do roteador: " + getRouterThroughput());
+		else System.out.println(getRouterThroughput());
 		WriteToFile.close();
 	}
 
+	/**
+	 * Retorna as médias das taxas de cada rodada, por servidor
+	 * @return means
+	 */
+	public Map<Server, List<Double>> getMeans() {
+		return means;
+	}
+
+	/**
+	 * Acrescenta às médias de cada servidor desta simulação as médias das rodadas do servidor de mesmo fluxo de outra simulação,
+	 * executada com os mesmos parâmetros, como uma réplica independente.
+	 * @param replication simulação executada
+	 */
+	public void addMeans(Simulator replication) {
+		for (Entry<Server, List<Double>> replicationMeans : replication.getMeans().entrySet()) {
+			Server server = servers.get(replicationMeans.getKey().getFlowId());
+			if (means.get(server) == null) {
+				means.put(server, new ArrayList<Double>());
+			}
+			means.get(server).addAll(replicationMeans.getValue());
+		}
+	}
+
+	/**
+	 * Retorna a pior precisão, em porcentagem, entre os intervalos de confiança das médias dos servidores
+	 * @return maior precisão dos servidores, ou 100 se não houver médias suficientes
+	 */
+	public double getPrecision() {
+		double precision = means.isEmpty() ? 100 : 0;
+		for (List<Double> serverMeans : means.values()) {
+			precision = Math.max(precision, ConfidenceInterval.getPrecision(serverMeans));
+		}
+		return precision;
+	}
+
+	/**
+	 * Agrupa por grupo de servidores as médias das taxas dos servidores
+	 * @return Map com a média de cada servidor, por grupo
+	 */
+	public Map<ServerGroup, List<Double>> getGroupMeans() {
+		Map<ServerGroup, List<Double>> groupMeans = new LinkedHashMap<ServerGroup, List<Double>>();
+		
+		for (Entry<Server, List<Double>> means : this.means.entrySet()) {
+			ServerGroup group = means.getKey().getGroup();
+			if (groupMeans.get(group) == null) {
+				groupMeans.put(group, new ArrayList<Double>());
+			}
+			groupMeans.get(group).add(ConfidenceInterval.getMean(means.getValue()));
+		}
+		return groupMeans;
+	}
+
+	/**
+	 * Retorna o número de eventos processados na última execução
+	 * @return processedEvents
+	 */
+	public long getProcessedEvents() {
+		return processedEvents;
+	}
+
+	/**
+	 * Retorna o número médio de eventos por lote na última execução, ou seja, de eventos que aconteceram no mesmo instante
+	 * @return eventos por lote
+	 */
+	public double getAverageBatchSize() {
+		return processedEvents/(double) Math.max(1, processedBatches);
+	}
+
+	/**
+	 * Retorna o número de ACKs recebidos pelos servidores na última execução
+	 * @return processedAcks
+	 */
+	public long getProcessedAcks() {
+		return processedAcks;
+	}
+
+	/**
+	 * Retorna os bytes alocados por evento em regime permanente na última execução
+	 * @return bytes por evento, ou -1 se a medição não estiver disponível
+	 */
+	public double getSteadyStateBytesPerEvent() {
+		return steadyStateBytesPerEvent;
+	}
+
+	/**
+	 * Formata uma medição de bytes por evento
+	 * @param bytes
+	 * @return medição formatada, ou "indisponível"
+	 */
+	private static String formatBytes(double bytes) {
+		return bytes < 0 ? "indisponível" : String.format("%.1f", bytes);
+	}
+
+	/**
+	 * Formata o paralelismo de uma execução
+	 * @param parallelism
+	 * @return paralelismo formatado, ou "indisponível"
+	 */
+	static String formatParallelism(double parallelism) {
+		return parallelism < 0 ? "indisponível" : String.format("%.2f", parallelism);
+	}
+
+	/**
+	 * Retorna o tempo real gasto na última execução, em milissegundos
+	 * @return elapsedTime
+	 */
+	public long getElapsedTime() {
+		return elapsedTime;
+	}
+
+	/**
+	 * Retorna o paralelismo da última execução no modo <code>EngineMode.PARALLEL</code>: o tempo de CPU de todos os processos lógicos 
+	 * dividido pelo do caminho crítico, em que cada janela dura o tempo do seu processo mais demorado.
+	 * <p>
+	 * É a aceleração máxima do tratamento das janelas com uma thread por processo, cada uma no seu processador, 
+	 * desconsiderando a sincronização entre as janelas. Não depende do número de processadores da máquina em que foi medido.
+	 * 
+	 * @return paralelismo, ou -1 nos demais modos ou se a medição não estiver disponível
+	 */
+	public double getParallelism() {
+		if (process != null || criticalPathCpuTime <= 0) {
+			return -1;
+		}
+		return windowsCpuTime/(double) criticalPathCpuTime;
+	}
+
+	/**
+	 * Retorna a vazão média do roteador em toda a simulação, em pacotes por segundo
+	 * @return vazão do roteador
+	 */
+	public long getRouterThroughput() {
+		return routerRate*1000l*1000000l/simulatedTime;
+	}
+
 	/**
 	 * Retorna o servidor que enviou o pacote relacionado a este evento.
 	 * <p>
@@ -276,46 +990,70 @@ public class Simulator {
 	 * @return servidor
 	 */
 	private static Server getEventServer(Event event) {
-		if (event.getSender().getClass().equals(Server.class))
+		if (event.getSender() instanceof Server)
 			return (Server) event.getSender();
-		else if (event.getSender().getClass().equals(Receiver.class))
+		else if (event.getSender() instanceof Receiver)
 			return ((Receiver) event.getSender()).getServer();
 		else 
 			return null;
 	}
 
+	/**
+	 * Cria a lista de eventos futuros do tipo escolhido no arquivo de entrada.
+	 * @param type implementação da lista de eventos futuros
+	 * @return lista de eventos futuros vazia
+	 */
+	private static EventQueue createEventQueue(EventQueueType type) {
+		if (type == EventQueueType.CALENDAR_QUEUE) {
+			return new CalendarEventQueue();
+		}
+		return new BinaryHeapEventQueue();
+	}
+
 	/** 
 	 * Inicializa o roteador, o tráfego de fundo, e os servidores em tempo aleatório 
 	 */
-	private static void initSimulator() {
-		Router router = new Router(SimulatorProperties.bufferLength, SimulatorProperties.routerBroadcastRate, SimulatorProperties.routerPolicy);
-		Simulator.getInstance().backgroundTraffic = new BackgroundTraffic(SimulatorProperties.averageGustLength, SimulatorProperties.averageGustInterval);
+	private void initSimulator() {
+		//Os primeiros eventos de cada modelo são disparados no seu processo lógico
+		currentProcess.set(processes[0]);
+		Router router = new Router(scenario.bufferLength, scenario.routerBroadcastRate, scenario.routerPolicy);
+		Simulator.getInstance().backgroundTraffic = new BackgroundTraffic(scenario.averageGustLength, scenario.averageGustInterval);
 		
-		for (int i = 0; i < SimulatorProperties.serverGroupsNumber; i++) {
-			ServerGroup serverGroup = new ServerGroup(SimulatorProperties.serverGroupDelay[i]);
-			for (int j = 0; j < SimulatorProperties.serverGroupQuantity[i]; j++) {
-				Server server = new Server(SimulatorProperties.MSS, serverGroup, SimulatorProperties.serverBroadcastRate);
+		for (int i = 0; i < scenario.getServerGroupsNumber(); i++) {
+			ServerGroup serverGroup = new ServerGroup(scenario.serverGroupDelay[i]);
+			for (int j = 0; j < scenario.serverGroupQuantity[i]; j++) {
+				int flowId = Simulator.getInstance().servers.size();
+				currentProcess.set(getFlowProcess(flowId));
+				Server server = new Server(SimulatorProperties.MSS, serverGroup, scenario.serverBroadcastRate, flowId);
 				Receiver receiver = new Receiver(server);
 				server.startServer(receiver);
 				Simulator.getInstance().servers.add(server);
 			}
 		}
+		currentProcess.remove();
 	}
 
 	/**  
 	 * Adiciona às informações que o gráfico vai plotar, o tamanho da janela, no tempo atual. 
+	 * <p>
+	 * No modo <code>EngineMode.PARALLEL</code>, os processos lógicos dos servidores chamam este método ao mesmo tempo.
 	 * @param time
 	 * @param server
 	 */
 	private  void updatePlot(Long time, Server server) {
-		if (data.get(server) == null) {
-			data.put(server, new HashMap<Long, Integer>());
+		synchronized (data) {
+			if (data.get(server) == null) {
+				data.put(server, new HashMap<Long, Integer>());
+			}
+			data.get(server).put(time, (int) (Math.floor(server.getCwnd()/SimulatorProperties.MSS)));
 		}
-		data.get(server).put(time, (int) (Math.floor(server.getCwnd()/SimulatorProperties.MSS)));
 	}
 
 	/**
-	 * Adiciona o objeto que estende de listener á lista de listeners do eventType passado como parametro
+	 * Adiciona o objeto que estende de listener á lista de listeners do eventType passado como parametro.
+	 * <p>
+	 * O objeto passa a receber todos os eventos deste tipo, de todas as sessões TCP. 
+	 * Para receber apenas os próprios eventos, o objeto deve ser o destinatário do evento no <code>shotEvent</code>.
 	 * @param listener
 	 * @param eventType
 	 */
@@ -330,33 +1068,301 @@ public class Simulator {
 	}
 
 	/**
-	 * Retorna a lista de eventos do simulator
+	 * Retorna o servidor de um fluxo TCP
+	 * @param flowId identificador do fluxo
+	 * @return servidor
+	 */
+	public Server getServer(int flowId) {
+		return servers.get(flowId);
+	}
+
+	/**
+	 * Retorna a tabela com o estado das sessões TCP
+	 * @return flows
+	 */
+	public FlowTable getFlowTable() {
+		return flows;
+	}
+
+	/**
+	 * Retorna o tráfego de fundo da simulação
+	 * @return backgroundTraffic
+	 */
+	public BackgroundTraffic getBackgroundTraffic() {
+		return backgroundTraffic;
+	}
+
+	/**
+	 * Retorna a lista de eventos do simulator, ou do processo lógico da thread atual no modo <code>EngineMode.PARALLEL</code>
 	 * @return eventbuffer
 	 */
-	public List<Event> getEventBuffer() {
-		return eventBuffer;
+	public EventQueue getEventBuffer() {
+		return process().eventBuffer;
+	}
+
+	/**
+	 * Dispara um evento de um determinado tipo <code>EventType</code>, 
+	 * que será escutado apenas pelos objetos registrados para este tipo de evento.
+	 *  
+	 * @param eventType 
+	 * @param time 
+	 * @param leaveServerTime 
+	 * @param sender 
+	 * @param packageValue identificador do pacote
+	 * @return evento agendado, que pode ser cancelado através do <code>cancelEvent</code>
+	 * @see #shotEvent(Object, Listener, long, long, EventType, long)
+	 */
+	public Event shotEvent(Object sender, long time, long leaveServerTime, EventType type, long packageValue) {
+		return shotEvent(sender, null, time, leaveServerTime, type, packageValue);
 	}
 
 	/**
-	 * Dispara um evento de um determinado tipo <code>EventType</code>.
+	 * Dispara um evento de um determinado tipo <code>EventType</code>, endereçado a um destinatário.
 	 * <p>
-	 * Haverá a criação de um <code>Event</code>, de acordo com os parâmetros passados.
+	 * Haverá a criação de um <code>Event</code>, de acordo com os parâmetros passados, reaproveitando um evento que já aconteceu se houver.
+	 * Quem guardar o evento retornado para usá-lo depois que ele acontecer deve retê-lo através do <code>Event.retain()</code>.
 	 * Tal evento será adicionado na estrutura de controle dos eventos, 
 	 * para fazer os eventos acontecerem no instante de tempo especificado.
+	 * <p>
+	 * Ao acontecer, o evento é entregue aos objetos registrados para este tipo de evento e ao destinatário,
+	 * de forma que o custo da entrega não depende do número de sessões TCP.
 	 *  
 	 * @param eventType 
 	 * @param time 
 	 * @param leaveServerTime 
 	 * @param sender 
-	 * @param packageModel
+	 * @param target destinatário do evento, ou <code>null</code>
+	 * @param packageValue identificador do pacote
+	 * @return evento agendado, que pode ser cancelado através do <code>cancelEvent</code>
+	 */
+	public Event shotEvent(Object sender, Listener target, long time, long leaveServerTime, EventType type, long packageValue) {
+		LogicalProcess logicalProcess = process();
+		Event event = logicalProcess.eventPool.acquire(packageValue, sender, target, time, leaveServerTime, type);
+		event.setSequence(nextSequence(logicalProcess, event));
+		schedule(logicalProcess, event);
+		return event;
+	}
+
+	/**
+	 * Dispara um evento endereçado a um destinatário, com vários pacotes seguidos que chegam juntos ao roteador, como uma rajada do tráfego de fundo.
+	 * 
+	 * @param sender 
+	 * @param target destinatário do evento
+	 * @param time 
+	 * @param leaveServerTime 
+	 * @param type 
+	 * @param packageValue identificador do primeiro pacote
+	 * @param packageCount número de pacotes
+	 * @return evento agendado
+	 * @see #shotEvent(Object, Listener, long, long, EventType, long)
+	 */
+	public Event shotEvent(Object sender, Listener target, long time, long leaveServerTime, EventType type, long packageValue, int packageCount) {
+		LogicalProcess logicalProcess = process();
+		Event event = logicalProcess.eventPool.acquire(packageValue, sender, target, time, leaveServerTime, type);
+		event.setPackageCount(packageCount);
+		event.setSequence(nextSequence(logicalProcess, event));
+		schedule(logicalProcess, event);
+		return event;
+	}
+
+	/**
+	 * Dispara um evento endereçado a um destinatário, com uma opção SACK, como um ACK.
+	 * <p>
+	 * Os blocos da opção são copiados para a opção do evento, que é reaproveitada junto com ele, 
+	 * de forma que quem dispara pode reaproveitar a opção passada.
+	 * 
+	 * @param sender 
+	 * @param target destinatário do evento
+	 * @param time 
+	 * @param leaveServerTime 
+	 * @param type 
+	 * @param packageValue identificador do pacote
+	 * @param sackOption opção SACK copiada para o evento
+	 * @return evento agendado
+	 * @see #shotEvent(Object, Listener, long, long, EventType, long)
+	 */
+	public Event shotEvent(Object sender, Listener target, long time, long leaveServerTime, EventType type, long packageValue, SackOption sackOption) {
+		LogicalProcess logicalProcess = process();
+		Event event = logicalProcess.eventPool.acquire(packageValue, sender, target, time, leaveServerTime, type);
+		event.setSackOption(sackOption);
+		event.setSequence(nextSequence(logicalProcess, event));
+		schedule(logicalProcess, event);
+		return event;
+	}
+
+	/**
+	 * Coloca um evento, com tempo e número de sequência já definidos, na estrutura de controle dos eventos.
+	 * <p>
+	 * No modo <code>EngineMode.PARALLEL</code>, os pacotes enviados pelos servidores vão para a caixa de saída do processo,
+	 * e os ACKs para a caixa de entrada do processo do servidor.
+	 * 
+	 * @param logicalProcess processo lógico que disparou o evento
+	 * @param event
+	 */
+	private void schedule(LogicalProcess logicalProcess, Event event) {
+		if (InvariantChecker.ENABLED) {
+			invariantChecker.scheduled(event);
+		}
+		//O fluxo do evento só é procurado quando o nível TRACE está ligado
+		if (Tracer.isLevelEnabled(TraceLevel.TRACE) && Tracer.isEnabled(TraceLevel.TRACE, getFlowId(event.getSender(), event.getTarget()), event.getType())) {
+			Tracer.event(event);
+		}
+		if (event.getType() == EventType.TIME_OUT) {
+			logicalProcess.timeoutWheel.add(event);
+		} else if (logicalProcess.outbox != null && event.getType() == EventType.PACKAGE_SENT) {
+			logicalProcess.outbox.add(event);
+		} else if (process == null && event.getType() == EventType.ACK) {
+			getFlowProcess(((Server) event.getTarget()).getFlowId()).inbox.add(event);
+		} else {
+			logicalProcess.eventBuffer.add(event);
+		}
+	}
+
+	/**
+	 * Reserva um número de sequência de disparo, para um pacote de um trem que só será agendado quando o anterior chegar ao roteador.
+	 * <p>
+	 * Reservando o número no momento em que o pacote seria disparado em um evento próprio, 
+	 * os eventos empatados no tempo acontecem na mesma ordem que no modo <code>TransmissionMode.PER_PACKAGE</code>.
+	 * Os trens só existem na execução sequencial.
+	 * 
+	 * @return número de sequência
+	 * @see Event#startTrain(long)
+	 */
+	public long reserveSequence() {
+		return processes[0].eventSequence++;
+	}
+
+	/**
+	 * Retorna a sequência de um evento disparado, que é a ordem do disparo na simulação.
+	 * <p>
+	 * Fora das janelas do modo <code>EngineMode.PARALLEL</code>, os disparos são contados no primeiro processo.
+	 * Dentro de uma janela, o evento recebe uma sequência provisória do seu processo, e a definitiva ao fim da janela.
+	 * 
+	 * @param logicalProcess processo lógico que disparou o evento
+	 * @param event evento disparado
+	 * @return número de sequência
+	 * @see LogicalProcess#assignSequences(LogicalProcess[], long)
+	 */
+	private long nextSequence(LogicalProcess logicalProcess, Event event) {
+		if (logicalProcess.window == 0) {
+			return processes[0].eventSequence++;
+		}
+		return logicalProcess.logShot(event);
+	}
+
+	/**
+	 * Retorna o fluxo TCP de um evento, que é o do servidor que o enviou ou que o recebe.
+	 * @param sender
+	 * @param target
+	 * @return identificador do fluxo, ou -1 se o evento não pertence a um fluxo, como os do tráfego de fundo
+	 */
+	private int getFlowId(Object sender, Listener target) {
+		if (sender instanceof Server) {
+			return ((Server) sender).getFlowId();
+		}
+		if (target instanceof Server) {
+			return ((Server) target).getFlowId();
+		}
+		return -1;
+	}
+
+	/**
+	 * Cancela um evento disparado pelo <code>shotEvent</code>, que ainda não aconteceu.
+	 * <p>
+	 * O cancelamento custa O(1): o evento é apenas marcado, e descartado pela lista de eventos futuros quando chegar a sua vez.
+	 * <p>
+	 * Se o evento não tiver sido retido, ele pode ser reaproveitado logo após o cancelamento, e não deve mais ser usado.
+	 * 
+	 * @param event evento a ser cancelado. Se já tiver acontecido ou sido cancelado, nada é feito.
 	 */
-	public void shotEvent(Object sender, long time, long leaveServerTime, EventType type, PackageModel packageModel) {
-		Event event = new Event(packageModel, sender, time, leaveServerTime,
-				type);
-		if (event.getSender().getClass().equals(Server.class) && event.getType().equals(EventType.PACKAGE_SENT)) {			
-//			System.out.println(event);
+	public void cancelEvent(Event event) {
+		if (InvariantChecker.ENABLED && event.isScheduled() && !event.isCancelled()) {
+			invariantChecker.removed(event);
 		}
-		eventBuffer.add(event);
+		
+		LogicalProcess logicalProcess = process();
+		boolean removed;
+		if (event.getType() == EventType.TIME_OUT) {
+			removed = logicalProcess.timeoutWheel.cancel(event);
+		} else if (logicalProcess.outbox != null && event.getType() == EventType.PACKAGE_SENT) {
+			removed = logicalProcess.outbox.cancel(event);
+		} else {
+			removed = logicalProcess.eventBuffer.cancel(event);
+		}
+		if (removed) {
+			logicalProcess.eventPool.release(event);
+		}
+	}
+
+	/**
+	 * Devolve um evento retido através do <code>Event.retain()</code>, quando quem o reteve não precisa mais dele.
+	 * <p>
+	 * Se ninguém mais retiver o evento e ele não estiver mais na lista de eventos futuros, ele volta para o <code>EventPool</code>
+	 * e não deve mais ser usado.
+	 * 
+	 * @param event evento retido
+	 */
+	public void releaseEvent(Event event) {
+		event.unretain();
+		if (!event.isRetained() && !event.isScheduled()) {
+			process().eventPool.release(event);
+		}
+	}
+
+	/**
+	 * Retorna a verificação das invariantes do protocolo. Só deve ser usada quando <code>InvariantChecker.ENABLED</code>.
+	 * @return invariantChecker
+	 */
+	public InvariantChecker getInvariantChecker() {
+		return invariantChecker;
+	}
+
+	/**
+	 * Retorna uma semente para um gerador aleatório da simulação.
+	 * <p>
+	 * Se o arquivo de entrada tiver uma semente, as sementes são geradas a partir dela, 
+	 * e a simulação se repete exatamente a cada execução. Senão, a semente depende do relógio.
+	 * 
+	 * @return semente
+	 */
+	public long newSeed() {
+		if (seeds != null) {
+			return seeds.nextLong();
+		}
+		return System.nanoTime();
+	}
+
+	/**
+	 * Substitui os parâmetros do cenário desta simulação. Deve ser chamado antes de <code>run()</code>.
+	 * @param scenario cenário
+	 */
+	public void setScenario(Scenario scenario) {
+		this.scenario = scenario;
+	}
+
+	/**
+	 * Retorna os parâmetros do cenário desta simulação
+	 * @return scenario, ou <code>null</code> se a simulação ainda não foi criada
+	 */
+	public Scenario getScenario() {
+		return scenario;
+	}
+
+	/**
+	 * Substitui a semente dos geradores de números aleatórios desta simulação. Deve ser chamado antes de <code>run()</code>.
+	 * @param seed semente, ou <code>null</code> para usar a semente de <code>SimulatorProperties</code>
+	 */
+	public void setSeed(Long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Fixa o número de rodadas medidas da simulação, em vez de executá-la até atingir a precisão desejada.
+	 * Deve ser chamado antes de <code>run()</code>.
+	 * @param maxRounds número de rodadas após a fase transiente, ou 0 para executar até atingir a precisão
+	 */
+	public void setMaxRounds(int maxRounds) {
+		this.maxRounds = maxRounds;
 	}
 
 	public boolean isOutputFileMode() {
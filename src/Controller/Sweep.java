@@ -0,0 +1,264 @@
+package Controller;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import Utils.ConfidenceInterval;
+import Utils.PropertiesReader;
+import Utils.Scenario;
+
+/**
+ *
+ * Executa uma varredura de parâmetros: vários cenários da simulação, ao mesmo tempo, em um número limitado de threads,
+ * escrevendo uma linha de resultados por cenário em um arquivo CSV.
+ * <p>
+ * Os cenários partem dos valores do arquivo de entrada, como no <code>Simulator</code>, e são descritos no arquivo de varredura,
+ * com os nomes dos campos de <code>Scenario</code> e os valores nas unidades do arquivo de entrada. Cada linha pode ser:
+ * <p>
+ * <code>campo valor1 valor2 ...</code>	um eixo da grade: os cenários são todas as combinações dos valores dos eixos
+ * <p>
+ * <code>+ campo=valor campo=valor ...</code>	um cenário da lista, combinado com cada ponto da grade
+ * <p>
+ * Linhas vazias ou começadas por <code>#</code> são ignoradas. Os grupos de servidores recebem um valor por grupo, separados por vírgula,
+ * como em <code>serverGroupQuantity 5,5 10,10</code>.
+ * <p>
+ * Cada linha do CSV tem o cenário, a vazão média e a metade do intervalo de confiança de cada grupo,
+ * a vazão do roteador e o tempo de execução. As linhas são escritas na ordem em que os cenários terminam.
+ * Se o arquivo CSV já existir, os cenários que já estão nele não são executados de novo,
+ * de forma que uma varredura interrompida pode ser continuada.
+ * <p>
+ * Argumentos, opcionais: arquivo de varredura (padrão: <code>varredura.txt</code>),
+ * arquivo CSV (padrão: <code>varredura.csv</code>) e número de threads (padrão: número de processadores).
+ *
+ * @see Scenario
+ */
+public class Sweep {
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		PropertiesReader.readProperties();
+
+		String sweepFile = args.length > 0 ? args[0] : "varredura.txt";
+		String csvFile = args.length > 1 ? args[1] : "varredura.csv";
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+		List<String> keys = readScenarios(sweepFile);
+		Scenario base = Scenario.fromProperties();
+		int groups = 0;
+		for (String key : keys) {
+			groups = Math.max(groups, applyKey(base, key).getServerGroupsNumber());
+		}
+
+		//Cenários que já estão no CSV não são executados de novo
+		Set<String> done = readDoneScenarios(csvFile);
+		boolean newFile = !new File(csvFile).exists() || new File(csvFile).length() == 0;
+		PrintWriter writer = new PrintWriter(new FileWriter(csvFile, true));
+		if (newFile) {
+			writer.println(header(groups));
+			writer.flush();
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		CompletionService<String> results = new ExecutorCompletionService<String>(pool);
+		int submitted = 0;
+		for (String key : keys) {
+			if (!done.contains(key)) {
+				results.submit(new ScenarioRun(key, applyKey(base, key), groups));
+				submitted++;
+			}
+		}
+		System.out.println("Cenários: " + keys.size() + " (já executados: " + (keys.size() - submitted) + ", threads: " + threads + ")");
+
+		try {
+			for (int i = 0; i < submitted; i++) {
+				Future<String> result = results.take();
+				try {
+					//Cada linha é gravada assim que o cenário termina
+					writer.println(result.get());
+					writer.flush();
+				} catch (ExecutionException e) {
+					System.err.println("Cenário falhou: " + e.getCause());
+				}
+				System.out.println("Cenários executados: " + (i + 1) + "/" + submitted);
+			}
+		} finally {
+			pool.shutdownNow();
+			writer.close();
+		}
+	}
+
+	/**
+	 * Lê o arquivo de varredura, e monta a chave de cada cenário: as atribuições <code>campo=valor</code>, separadas por <code>;</code>
+	 * @param sweepFile arquivo de varredura
+	 * @return chaves dos cenários, na ordem da grade
+	 * @throws IOException
+	 */
+	private static List<String> readScenarios(String sweepFile) throws IOException {
+		List<String> list = new ArrayList<String>();
+		List<String> grid = new ArrayList<String>();
+		grid.add("");
+
+		BufferedReader reader = new BufferedReader(new FileReader(sweepFile));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				String[] tokens = line.split("\\s+");
+				if (tokens[0].equals("+")) {
+					StringBuilder key = new StringBuilder();
+					for (int i = 1; i < tokens.length; i++) {
+						key.append(i > 1 ? ";" : "").append(tokens[i]);
+					}
+					list.add(key.toString());
+				} else {
+					//Combina cada ponto da grade com cada valor do eixo
+					List<String> product = new ArrayList<String>();
+					for (String point : grid) {
+						for (int i = 1; i < tokens.length; i++) {
+							product.add((point.isEmpty() ? "" : point + ";") + tokens[0] + "=" + tokens[i]);
+						}
+					}
+					grid = product;
+				}
+			}
+		} finally {
+			reader.close();
+		}
+
+		if (list.isEmpty()) {
+			return grid;
+		}
+		List<String> keys = new ArrayList<String>();
+		for (String scenario : list) {
+			for (String point : grid) {
+				keys.add(scenario.isEmpty() ? point : point.isEmpty() ? scenario : scenario + ";" + point);
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * Cria o cenário descrito pela chave, a partir do cenário base
+	 * @param base cenário do arquivo de entrada
+	 * @param key atribuições <code>campo=valor</code>, separadas por <code>;</code>
+	 * @return cenário
+	 */
+	private static Scenario applyKey(Scenario base, String key) {
+		Scenario scenario = base.copy();
+		if (!key.isEmpty()) {
+			for (String assignment : key.split(";")) {
+				int separator = assignment.indexOf('=');
+				if (separator < 0) {
+					throw new IllegalArgumentException("Atribuição inválida no cenário " + key + ": " + assignment);
+				}
+				scenario.set(assignment.substring(0, separator), assignment.substring(separator + 1));
+			}
+		}
+		return scenario;
+	}
+
+	/**
+	 * Lê as chaves dos cenários que já estão no CSV
+	 * @param csvFile arquivo CSV
+	 * @return chaves dos cenários executados, ou conjunto vazio se o arquivo não existir
+	 * @throws IOException
+	 */
+	private static Set<String> readDoneScenarios(String csvFile) throws IOException {
+		Set<String> done = new HashSet<String>();
+		if (!new File(csvFile).exists()) {
+			return done;
+		}
+		BufferedReader reader = new BufferedReader(new FileReader(csvFile));
+		try {
+			String line = reader.readLine();
+			while ((line = reader.readLine()) != null) {
+				//A chave é o primeiro campo, entre aspas
+				int end = line.indexOf('"', 1);
+				if (line.startsWith("\"") && end > 0) {
+					done.add(line.substring(1, end));
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return done;
+	}
+
+	/**
+	 * Monta o cabeçalho do CSV
+	 * @param groups número máximo de grupos dos cenários
+	 * @return cabeçalho
+	 */
+	private static String header(int groups) {
+		StringBuilder header = new StringBuilder("cenario");
+		for (int i = 1; i <= groups; i++) {
+			header.append(",grupo").append(i).append("_atraso_ms,grupo").append(i).append("_vazao,grupo").append(i).append("_ic");
+		}
+		return header.append(",roteador,tempo_ms").toString();
+	}
+
+	/**
+	 * Execução de um cenário em uma thread do pool
+	 */
+	private static class ScenarioRun implements Callable<String> {
+
+		private final String key;
+		private final Scenario scenario;
+		private final int groups;
+
+		/**
+		 * @param key chave do cenário, primeiro campo da linha
+		 * @param scenario parâmetros do cenário
+		 * @param groups número de grupos das colunas do CSV
+		 */
+		public ScenarioRun(String key, Scenario scenario, int groups) {
+			this.key = key;
+			this.scenario = scenario;
+			this.groups = groups;
+		}
+
+		/**
+		 * Cria a instância do simulador da thread atual, executa o cenário até atingir a precisão desejada e monta a linha do CSV
+		 * @return linha do CSV
+		 */
+		@Override
+		public String call() {
+			Simulator simulator = Simulator.newInstance();
+			simulator.setScenario(scenario);
+			simulator.run();
+
+			StringBuilder row = new StringBuilder();
+			row.append('"').append(key).append('"');
+			List<List<Double>> groupMeans = new ArrayList<List<Double>>(simulator.getGroupMeans().values());
+			for (int i = 0; i < groups; i++) {
+				if (i < groupMeans.size()) {
+					row.append(',').append(scenario.serverGroupDelay[i]/(1000l*1000l));
+					row.append(',').append(ConfidenceInterval.getMean(groupMeans.get(i)));
+					row.append(',').append(ConfidenceInterval.getHalfWidth(groupMeans.get(i)));
+				} else {
+					row.append(",,,");
+				}
+			}
+			row.append(',').append(simulator.getRouterThroughput());
+			row.append(',').append(simulator.getElapsedTime());
+			return row.toString();
+		}
+	}
+}
@@ -0,0 +1,11 @@
+package Enum;
+
+/**
+ * Conjunto das formas como um receptor pode confirmar os pacotes recebidos
+ */
+public enum AckMode {
+	/** Um ACK para cada pacote recebido */
+	IMMEDIATE, 
+	/** ACK atrasado (RFC 1122): um ACK a cada dois pacotes recebidos em ordem, ou ao fim da espera, e imediato para pacote fora de ordem */
+	DELAYED
+}
@@ -0,0 +1,11 @@
+package Enum;
+
+/**
+ * Conjunto das formas como o simulador executa os eventos
+ */
+public enum EngineMode {
+	/** Todos os eventos em uma única lista de eventos futuros, em uma thread */
+	SEQUENTIAL, 
+	/** Fluxos divididos em processos lógicos, cada um com a sua lista de eventos, executados em paralelo em janelas de tempo, com os mesmos resultados de <code>SEQUENTIAL</code> */
+	PARALLEL
+}
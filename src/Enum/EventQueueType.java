@@ -0,0 +1,11 @@
+package Enum;
+
+/**
+ * Conjunto das implementações disponíveis para a lista de eventos futuros do simulador
+ */
+public enum EventQueueType {
+	/** Heap binário, com inserção e remoção em O(log n) */
+	BINARY_HEAP, 
+	/** Calendar queue (Brown, 1988), com inserção e remoção em O(1) amortizado */
+	CALENDAR_QUEUE
+}
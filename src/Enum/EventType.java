@@ -14,8 +14,33 @@ package Enum;
  * PACKAGE_DELIVERED	Server		Receiver			Evento que representa a entrega do pacote ao receptor
  * <p>
  * ACK					Receiver	Server				Evento que representa um ACK
+ * <p>
+ * DELAYED_ACK			Receiver	Receiver			Evento que representa o fim da espera de um ACK atrasado
+ * <p>
+ * Eventos que acontecem no mesmo instante são tratados em ordem de prioridade do tipo, e depois na ordem em que foram disparados.
+ * A saída de um pacote do roteador (<code>PACKAGE_DELIVERED</code>) vem antes da chegada de outro no mesmo instante (<code>PACKAGE_SENT</code>),
+ * liberando espaço no buffer para ele. Um ACK que chega no instante do timeout vem antes do timeout, evitando uma retransmissão.
+ * Um pacote entregue no instante em que vence a espera de um ACK atrasado vem antes dela, sendo confirmado pelo mesmo ACK.
  * 
+ * @see models.Event#compareTo(models.Event)
  */
 public enum EventType {
-	PACKAGE_SENT, PACKAGE_DELIVERED, ACK, TIME_OUT
+	PACKAGE_SENT(1), PACKAGE_DELIVERED(0), ACK(2), TIME_OUT(3), DELAYED_ACK(4);
+	
+	/**
+	 * Prioridade entre eventos do mesmo instante. Menor valor acontece primeiro.
+	 */
+	private final int priority;
+	
+	private EventType(int priority) {
+		this.priority = priority;
+	}
+	
+	/**
+	 * Retorna a prioridade do tipo entre eventos do mesmo instante. Menor valor acontece primeiro.
+	 * @return priority
+	 */
+	public int getPriority() {
+		return priority;
+	}
 }
@@ -0,0 +1,11 @@
+package Enum;
+
+/**
+ * Conjunto das formas como um servidor pode controlar os timeouts de retransmissão
+ */
+public enum TimeoutMode {
+	/** Um timeout para cada pacote enviado, cancelado ao receber seu ACK */
+	PER_PACKAGE, 
+	/** Um único timer por conexão, cobrindo o pacote mais antigo ainda não confirmado e reiniciado a cada ACK que confirma dados novos (RFC 6298) */
+	PER_FLOW
+}
@@ -0,0 +1,19 @@
+package Enum;
+
+/**
+ * Níveis de detalhe do trace da simulação, do menos ao mais detalhado.
+ * <p>
+ * Um registro é escrito se o seu nível for menor ou igual ao nível configurado.
+ * 
+ * @see Utils.Tracer
+ */
+public enum TraceLevel {
+	/** Nenhum registro */
+	OFF, 
+	/** Mudanças de modo de transmissão dos servidores e situações inesperadas */
+	INFO, 
+	/** Eventos recebidos pelos servidores */
+	DEBUG, 
+	/** Todos os eventos disparados */
+	TRACE
+}
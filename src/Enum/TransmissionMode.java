@@ -0,0 +1,11 @@
+package Enum;
+
+/**
+ * Conjunto das formas como um servidor pode disparar os pacotes de uma janela de transmissão
+ */
+public enum TransmissionMode {
+	/** Um evento <code>EventType.PACKAGE_SENT</code> para cada pacote da janela */
+	PER_PACKAGE, 
+	/** Um único evento por janela, com os pacotes em sequência (trem), reagendado a cada pacote que chega ao roteador */
+	TRAIN
+}
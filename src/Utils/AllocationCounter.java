@@ -0,0 +1,40 @@
+package Utils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Mede quantos bytes a thread atual já alocou, para calcular a taxa de alocação da simulação.
+ * <p>
+ * Depende da extensão <code>com.sun.management.ThreadMXBean</code> da JVM.
+ * Se a JVM não tiver essa extensão, a medição não está disponível.
+ */
+public class AllocationCounter {
+
+	private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+
+	/**
+	 * Retorna o total de bytes alocados pela thread atual desde que ela foi criada.
+	 * @return bytes alocados, ou -1 se a medição não estiver disponível
+	 */
+	public static long allocatedBytes() {
+		if (THREAD_BEAN instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) THREAD_BEAN).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	/**
+	 * Calcula os bytes alocados por evento entre duas medições.
+	 * @param startBytes medição inicial
+	 * @param endBytes medição final
+	 * @param events número de eventos processados entre as medições
+	 * @return bytes por evento, ou -1 se a medição não estiver disponível
+	 */
+	public static double bytesPerEvent(long startBytes, long endBytes, long events) {
+		if (startBytes < 0 || endBytes < 0 || events <= 0) {
+			return -1;
+		}
+		return (endBytes - startBytes)/(double) events;
+	}
+}
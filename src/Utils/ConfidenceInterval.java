@@ -1,5 +1,6 @@
 package Utils;
 
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.commons.math3.distribution.TDistribution;
@@ -8,34 +9,74 @@ import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
 /**
  * 
  * Implementação dos cálculos necessários para geração dos intervalos de confiança.
+ * <p>
+ * Os cálculos não guardam estado, e podem ser feitos ao mesmo tempo por simulações em threads diferentes.
  *
  */
 public class ConfidenceInterval {
 	/**
-	 * 
+	 * Quantis da t-Student usados no intervalo de confiança de 90%, por graus de liberdade, calculados uma única vez.
+	 * A tabela só cresce, e é substituída inteira, para que possa ser lida sem sincronização.
 	 */
-	private static SummaryStatistics stats;
+	private static volatile double[] quantiles = new double[0];
+	
 	/**
-	 * 
+	 * Cria a distribuição t-Student sem gerador de números aleatórios, pois ela só é usada para calcular quantis.
+	 * O gerador padrão da distribuição custaria uma alocação grande a cada verificação de fim de rodada.
+	 * @param degreesOfFreedom
+	 * @return distribuição t-Student
 	 */
-	private static TDistribution tDistribution;
+	private static TDistribution newTDistribution(double degreesOfFreedom) {
+		return new TDistribution(null, degreesOfFreedom, TDistribution.DEFAULT_INVERSE_ABSOLUTE_ACCURACY);
+	}
 	
 	/**
-	 * 
+	 * Retorna o quantil da t-Student do intervalo de confiança de 90%, calculando-o apenas na primeira vez
+	 * @param degreesOfFreedom graus de liberdade, maior que zero
+	 * @return quantil
+	 */
+	private static double getQuantile(int degreesOfFreedom) {
+		double[] table = quantiles;
+		if (degreesOfFreedom >= table.length) {
+			synchronized (ConfidenceInterval.class) {
+				table = quantiles;
+				if (degreesOfFreedom >= table.length) {
+					int oldLength = table.length;
+					table = Arrays.copyOf(table, Math.max(2*oldLength, degreesOfFreedom + 1));
+					for (int i = Math.max(1, oldLength); i < table.length; i++) {
+						table[i] = newTDistribution(i).inverseCumulativeProbability(1.0 - 0.1/2);
+					}
+					quantiles = table;
+				}
+			}
+		}
+		return table[degreesOfFreedom];
+	}
+	
+	/**
+	 * Retorna a precisão da média dos dados: a metade da largura do intervalo de confiança de 90%, em porcentagem da média.
+	 * <p>
+	 * É verificada a cada fim de rodada, então a média e o desvio padrão são calculados diretamente, e o quantil vem da tabela,
+	 * sem criar objetos.
 	 * @param data
-	 * @param t
-	 * @return
+	 * @return precisão, ou 100 se houver menos de 2 amostras
 	 */
 	public static double getPrecision(List<Double> data) {
-		if (data.size() > 1) {
-			stats = new SummaryStatistics();
-			for (Double d : data) {
-				stats.addValue(d);
+		int n = data.size();
+		if (n > 1) {
+			double sum = 0;
+			for (int i = 0; i < n; i++) {
+				sum += data.get(i);
 			}
-			tDistribution = new TDistribution(stats.getN() - 1);
-			double t = tDistribution.inverseCumulativeProbability(1.0 - 0.1/2);	
+			double mean = sum/n;
+			double squares = 0;
+			for (int i = 0; i < n; i++) {
+				double difference = data.get(i) - mean;
+				squares += difference*difference;
+			}
+			double standardDeviation = Math.sqrt(squares/(n - 1));
 			
-			return 100*t*stats.getStandardDeviation()/(stats.getMean()*Math.sqrt(stats.getN()));			
+			return 100*getQuantile(n - 1)*standardDeviation/(mean*Math.sqrt(n));
 		}
 		return 100;
 	}
@@ -57,11 +98,11 @@ public class ConfidenceInterval {
 	 */
 	public static String getConfidenceInterval(List<Double> data) {
 		if (data != null && data.size() > 0) {
-			stats = new SummaryStatistics();
+			SummaryStatistics stats = new SummaryStatistics();
 			for (Double d : data) {
 				stats.addValue(d);
 			}
-			tDistribution = new TDistribution(stats.getN() - 1);
+			TDistribution tDistribution = newTDistribution(stats.getN() - 1);
 			double t = tDistribution.inverseCumulativeProbability(1.0 - 0.1/2);			
 						
 			double avarege = stats.getMean();
@@ -72,9 +113,28 @@ public class ConfidenceInterval {
 		return null;
 	}
 	
+	/**
+	 * Retorna a metade da largura do intervalo de confiança de 90% da média dos dados
+	 * @param data
+	 * @return metade da largura do intervalo, ou 0 se houver menos de 2 amostras
+	 */
+	public static double getHalfWidth(List<Double> data) {
+		if (data != null && data.size() > 1) {
+			SummaryStatistics stats = new SummaryStatistics();
+			for (Double d : data) {
+				stats.addValue(d);
+			}
+			TDistribution tDistribution = newTDistribution(stats.getN() - 1);
+			double t = tDistribution.inverseCumulativeProbability(1.0 - 0.1/2);
+			
+			return getConfidenceIntervalWidth(stats, t);
+		}
+		return 0;
+	}
+	
 	public static Double getMean(List<Double> data) {
 		if (data != null && data.size() > 0) {
-			stats = new SummaryStatistics();
+			SummaryStatistics stats = new SummaryStatistics();
 			for (Double d : data) {
 				stats.addValue(d);
 			}
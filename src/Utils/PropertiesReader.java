@@ -4,11 +4,21 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.util.Scanner;
 
+import Enum.AckMode;
+import Enum.EngineMode;
+import Enum.EventQueueType;
 import Enum.RouterType;
+import Enum.TimeoutMode;
+import Enum.TransmissionMode;
 
 public class PropertiesReader {
 
 	public static final String FILENAME = "simulador.txt";
+	
+	/**
+	 * Nomes dos parâmetros opcionais, na ordem em que eram lidos quando não tinham nome
+	 */
+	private static final String[] OPTION_NAMES = {"eventQueueType", "timeoutMode", "transmissionMode", "ackMode", "engineMode", "seed"};
 
 	@SuppressWarnings("resource")
 	public static void readProperties() {
@@ -49,9 +59,112 @@ public class PropertiesReader {
 		SimulatorProperties.totalSimulationTime = scanner.nextLong() * 1000l*1000l;
 		SimulatorProperties.transientTime = scanner.nextLong() * 1000l*1000l;
 		
+		//Parâmetros opcionais, em qualquer ordem, que mantêm o valor padrão caso não estejam no arquivo
+		boolean[] readOptions = new boolean[OPTION_NAMES.length];
+		while (scanner.hasNext()) {
+			readOption(scanner.next(), readOptions);
+		}
+		
 		printInputData();
 	}
 	
+	/**
+	 * Lê um parâmetro opcional, no formato <code>nome=valor</code> ou apenas pelo valor.
+	 * <p>
+	 * Um número é a semente. Um valor sem nome vai para o primeiro parâmetro ainda não lido que o aceita, 
+	 * o que mantém a ordem antiga quando o mesmo nome vale para mais de um parâmetro, como <code>PER_PACKAGE</code>.
+	 * 
+	 * @param token parâmetro lido do arquivo
+	 * @param readOptions parâmetros já lidos, atualizado com o parâmetro deste token
+	 * @throws IllegalArgumentException se o nome ou o valor não corresponder a nenhum parâmetro
+	 */
+	private static void readOption(String token, boolean[] readOptions) {
+		int separator = token.indexOf('=');
+		if (separator >= 0) {
+			String name = token.substring(0, separator);
+			for (int option = 0; option < OPTION_NAMES.length; option++) {
+				if (OPTION_NAMES[option].equals(name)) {
+					setOption(option, token.substring(separator + 1));
+					readOptions[option] = true;
+					return;
+				}
+			}
+			throw new IllegalArgumentException("Parâmetro opcional desconhecido: " + name);
+		}
+		
+		for (int option = 0; option < OPTION_NAMES.length; option++) {
+			if (!readOptions[option] && accepts(option, token)) {
+				setOption(option, token);
+				readOptions[option] = true;
+				return;
+			}
+		}
+		throw new IllegalArgumentException("Parâmetro opcional inválido: " + token);
+	}
+	
+	/**
+	 * Indica se o valor é válido para o parâmetro opcional
+	 * @param option posição do parâmetro em <code>OPTION_NAMES</code>
+	 * @param value valor lido
+	 * @return <code>true</code> se o valor é um dos nomes do enum do parâmetro, ou um número no caso da semente
+	 */
+	private static boolean accepts(int option, String value) {
+		Enum<?>[] values;
+		switch (option) {
+		case 0:
+			values = EventQueueType.values();
+			break;
+		case 1:
+			values = TimeoutMode.values();
+			break;
+		case 2:
+			values = TransmissionMode.values();
+			break;
+		case 3:
+			values = AckMode.values();
+			break;
+		case 4:
+			values = EngineMode.values();
+			break;
+		default:
+			return value.matches("-?\\d+");
+		}
+		for (Enum<?> constant : values) {
+			if (constant.name().equals(value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Guarda o valor de um parâmetro opcional em <code>SimulatorProperties</code>
+	 * @param option posição do parâmetro em <code>OPTION_NAMES</code>
+	 * @param value valor lido
+	 */
+	private static void setOption(int option, String value) {
+		switch (option) {
+		case 0:
+			SimulatorProperties.eventQueueType = EventQueueType.valueOf(value);
+			break;
+		case 1:
+			SimulatorProperties.timeoutMode = TimeoutMode.valueOf(value);
+			break;
+		case 2:
+			SimulatorProperties.transmissionMode = TransmissionMode.valueOf(value);
+			break;
+		case 3:
+			SimulatorProperties.ackMode = AckMode.valueOf(value);
+			break;
+		case 4:
+			SimulatorProperties.engineMode = EngineMode.valueOf(value);
+			break;
+		default:
+			SimulatorProperties.seed = Long.valueOf(value);
+			break;
+		}
+	}
+	
 	/**
 	 * Imprime no console os valores lidos do arquivo de entrada.
 	 */
@@ -72,6 +185,12 @@ public class PropertiesReader {
 		System.out.println("	   ---------------------------------------------");
 		System.out.println("		Tempo total de simulação: " + SimulatorProperties.totalSimulationTime + " ns");
 		System.out.println("		Estimativa da fase transiente: " + SimulatorProperties.transientTime + " ns");
+		System.out.println("		Lista de eventos futuros: " + SimulatorProperties.eventQueueType);
+		System.out.println("		Timeout de retransmissão: " + SimulatorProperties.timeoutMode);
+		System.out.println("		Envio da janela: " + SimulatorProperties.transmissionMode);
+		System.out.println("		Confirmação dos pacotes: " + SimulatorProperties.ackMode);
+		System.out.println("		Execução dos eventos: " + SimulatorProperties.engineMode);
+		System.out.println("		Semente: " + (SimulatorProperties.seed != null ? SimulatorProperties.seed : "aleatória"));
 		 		
 		System.out.println("\n	=======================================================");
 		System.out.println("	=======================================================\n");
@@ -0,0 +1,161 @@
+package Utils;
+
+import java.util.Arrays;
+
+import Enum.RouterType;
+
+/**
+ *
+ * Parâmetros de um cenário de simulação: roteador, tráfego de fundo, grupos de servidores e duração das rodadas.
+ * <p>
+ * São os parâmetros de <code>SimulatorProperties</code> lidos apenas na criação da simulação, de forma que cada instância do
+ * <code>Simulator</code> pode ter o seu próprio cenário, e cenários diferentes podem ser executados ao mesmo tempo.
+ * O MSS e os modos de operação continuam globais, em <code>SimulatorProperties</code>.
+ * <p>
+ * Os valores ficam nas unidades usadas pelo simulador. O método <code>set()</code> recebe os valores nas unidades do arquivo de entrada.
+ *
+ * @see SimulatorProperties
+ * @see PropertiesReader
+ */
+public class Scenario {
+
+	public long routerBroadcastRate;
+	public long serverBroadcastRate;
+	public Long[] serverGroupDelay;
+	public Long[] serverGroupQuantity;
+	public int averageGustLength;
+	public double averageGustInterval;
+	public int bufferLength;
+	public RouterType routerPolicy;
+	public long totalSimulationTime;
+	public long transientTime;
+	public Long seed;
+
+	/**
+	 * Cria um cenário com os valores atuais de <code>SimulatorProperties</code>
+	 * @return cenário
+	 */
+	public static Scenario fromProperties() {
+		Scenario scenario = new Scenario();
+		scenario.routerBroadcastRate = SimulatorProperties.routerBroadcastRate;
+		scenario.serverBroadcastRate = SimulatorProperties.serverBroadcastRate;
+		scenario.serverGroupDelay = Arrays.copyOf(SimulatorProperties.serverGroupDelay, SimulatorProperties.serverGroupsNumber);
+		scenario.serverGroupQuantity = Arrays.copyOf(SimulatorProperties.serverGroupQuantity, SimulatorProperties.serverGroupsNumber);
+		scenario.averageGustLength = SimulatorProperties.averageGustLength;
+		scenario.averageGustInterval = SimulatorProperties.averageGustInterval;
+		scenario.bufferLength = SimulatorProperties.bufferLength;
+		scenario.routerPolicy = SimulatorProperties.routerPolicy;
+		scenario.totalSimulationTime = SimulatorProperties.totalSimulationTime;
+		scenario.transientTime = SimulatorProperties.transientTime;
+		scenario.seed = SimulatorProperties.seed;
+		return scenario;
+	}
+
+	/**
+	 * Cria uma cópia do cenário, que pode ser alterada sem alterar este
+	 * @return cópia
+	 */
+	public Scenario copy() {
+		Scenario scenario = new Scenario();
+		scenario.routerBroadcastRate = routerBroadcastRate;
+		scenario.serverBroadcastRate = serverBroadcastRate;
+		scenario.serverGroupDelay = serverGroupDelay.clone();
+		scenario.serverGroupQuantity = serverGroupQuantity.clone();
+		scenario.averageGustLength = averageGustLength;
+		scenario.averageGustInterval = averageGustInterval;
+		scenario.bufferLength = bufferLength;
+		scenario.routerPolicy = routerPolicy;
+		scenario.totalSimulationTime = totalSimulationTime;
+		scenario.transientTime = transientTime;
+		scenario.seed = seed;
+		return scenario;
+	}
+
+	/**
+	 * Retorna o número de grupos de servidores
+	 * @return número de grupos
+	 */
+	public int getServerGroupsNumber() {
+		return serverGroupDelay.length;
+	}
+
+	/**
+	 * Retorna o número total de servidores, somando todos os grupos
+	 * @return número de servidores
+	 */
+	public int getServersNumber() {
+		int servers = 0;
+		for (Long quantity : serverGroupQuantity) {
+			servers += quantity;
+		}
+		return servers;
+	}
+
+	/**
+	 * Substitui um parâmetro pelo nome do campo, com o valor nas unidades do arquivo de entrada:
+	 * taxas em bits por segundo, tempos em milissegundos.
+	 * Os grupos de servidores recebem um valor por grupo, separados por vírgula.
+	 *
+	 * @param name nome do campo
+	 * @param value valor
+	 * @throws IllegalArgumentException se o campo não existir
+	 */
+	public void set(String name, String value) {
+		if (name.equals("routerBroadcastRate")) {
+			routerBroadcastRate = Long.parseLong(value) / 8;
+		} else if (name.equals("serverBroadcastRate")) {
+			serverBroadcastRate = Long.parseLong(value) / 8;
+		} else if (name.equals("serverGroupDelay")) {
+			serverGroupDelay = parseList(value, 1000l*1000l);
+		} else if (name.equals("serverGroupQuantity")) {
+			serverGroupQuantity = parseList(value, 1);
+		} else if (name.equals("averageGustLength")) {
+			averageGustLength = Integer.parseInt(value);
+		} else if (name.equals("averageGustInterval")) {
+			averageGustInterval = Double.parseDouble(value) * 1000l*1000l;
+		} else if (name.equals("bufferLength")) {
+			bufferLength = Integer.parseInt(value);
+		} else if (name.equals("routerPolicy")) {
+			routerPolicy = RouterType.valueOf(value);
+		} else if (name.equals("totalSimulationTime")) {
+			totalSimulationTime = Long.parseLong(value) * 1000l*1000l;
+		} else if (name.equals("transientTime")) {
+			transientTime = Long.parseLong(value) * 1000l*1000l;
+		} else if (name.equals("seed")) {
+			seed = Long.valueOf(value);
+		} else {
+			throw new IllegalArgumentException("Parâmetro desconhecido: " + name);
+		}
+		if (serverGroupDelay.length != serverGroupQuantity.length) {
+			//Ao mudar o número de grupos, o outro campo dos grupos repete o seu último valor
+			if (name.equals("serverGroupDelay")) {
+				serverGroupQuantity = resize(serverGroupQuantity, serverGroupDelay.length);
+			} else if (name.equals("serverGroupQuantity")) {
+				serverGroupDelay = resize(serverGroupDelay, serverGroupQuantity.length);
+			}
+		}
+	}
+
+	/**
+	 * Lê uma lista de valores separados por vírgula, multiplicando cada um pelo fator
+	 */
+	private static Long[] parseList(String value, long factor) {
+		String[] values = value.split(",");
+		Long[] list = new Long[values.length];
+		for (int i = 0; i < values.length; i++) {
+			list[i] = Long.parseLong(values[i].trim()) * factor;
+		}
+		return list;
+	}
+
+	/**
+	 * Muda o tamanho da lista, repetindo o último valor nas novas posições
+	 */
+	private static Long[] resize(Long[] list, int size) {
+		Long[] resized = Arrays.copyOf(list, size);
+		for (int i = list.length; i < size; i++) {
+			resized[i] = list[list.length - 1];
+		}
+		return resized;
+	}
+}
@@ -1,21 +1,32 @@
 package Utils;
 
+import Enum.AckMode;
+import Enum.EngineMode;
+import Enum.EventQueueType;
 import Enum.RouterType;
+import Enum.TimeoutMode;
+import Enum.TransmissionMode;
 
 public class SimulatorProperties {
 	
-	public static Long routerBroadcastRate;
-	public static Long serverBroadcastRate;
-	public static Integer serverGroupsNumber;
+	public static long routerBroadcastRate;
+	public static long serverBroadcastRate;
+	public static int serverGroupsNumber;
 	public static Long[] serverGroupDelay;
 	public static Long[] serverGroupQuantity;
-	public static Integer averageGustLength;
-	public static Double averageGustInterval;
-	public static Integer bufferLength;
-	public static Long MSS;
+	public static int averageGustLength;
+	public static double averageGustInterval;
+	public static int bufferLength;
+	public static long MSS;
 	public static RouterType routerPolicy;
-	public static Long totalSimulationTime;
-	public static Long transientTime;
+	public static long totalSimulationTime;
+	public static long transientTime;
 	public static Boolean generateStatistics;
+	public static EventQueueType eventQueueType = EventQueueType.BINARY_HEAP;
+	public static TimeoutMode timeoutMode = TimeoutMode.PER_PACKAGE;
+	public static TransmissionMode transmissionMode = TransmissionMode.PER_PACKAGE;
+	public static AckMode ackMode = AckMode.IMMEDIATE;
+	public static EngineMode engineMode = EngineMode.SEQUENTIAL;
+	public static Long seed = null;
 	
 }
@@ -0,0 +1,305 @@
+package Utils;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.locks.LockSupport;
+
+import models.Event;
+import Enum.EventType;
+import Enum.TraceLevel;
+
+/**
+ * 
+ * Trace da simulação, com níveis e filtros por fluxo TCP e por tipo de evento.
+ * <p>
+ * Configurado pelas propriedades de sistema:
+ * <ul>
+ * <li><code>simulador.trace</code>: nível do trace (<code>OFF</code>, <code>INFO</code>, <code>DEBUG</code> ou <code>TRACE</code>), <code>INFO</code> por padrão;</li>
+ * <li><code>simulador.trace.fluxos</code>: identificadores dos fluxos registrados, separados por vírgula. Todos, por padrão;</li>
+ * <li><code>simulador.trace.eventos</code>: tipos de evento registrados, separados por vírgula. Todos, por padrão;</li>
+ * <li><code>simulador.trace.arquivo</code>: arquivo onde o trace é escrito. O console, por padrão;</li>
+ * <li><code>simulador.trace.buffer</code>: número de registros que cabem no buffer circular, 65536 por padrão.</li>
+ * </ul>
+ * <p>
+ * Quem registra deve antes consultar o <code>isEnabled</code>, e nenhum texto é montado para um registro desligado. 
+ * Quando calcular os argumentos da consulta tem custo, quem registra compara antes o nível com <code>isLevelEnabled</code>.
+ * <p>
+ * Os registros guardam apenas os campos do evento em um buffer circular de tamanho fixo. O texto é montado e escrito 
+ * por uma thread de escrita, de forma que a simulação nunca espera pelo console ou pelo arquivo. 
+ * Se o buffer estiver cheio, o registro é descartado e contado em <code>getDroppedRecords</code>.
+ */
+public class Tracer {
+
+	/**
+	 * Nível do trace, lido da propriedade de sistema quando a classe é carregada. 
+	 * Não é uma constante de compilação: cada consulta a um nível desligado ainda custa uma comparação.
+	 */
+	public static final TraceLevel LEVEL = TraceLevel.valueOf(System.getProperty("simulador.trace", TraceLevel.INFO.name()));
+	
+	/**
+	 * Ordinal do nível do trace, para a comparação com o nível dos registros
+	 */
+	private static final int LEVEL_ORDINAL = LEVEL.ordinal();
+	
+	/**
+	 * Tempo que a thread de escrita espera quando o buffer está vazio, em nanossegundos
+	 */
+	private static final long IDLE_WAIT = 200000;
+	
+	/**
+	 * Tempo máximo que o <code>flush</code> espera pela thread de escrita, em nanossegundos
+	 */
+	private static final long FLUSH_TIMEOUT = 10*1000*1000000l;
+	
+	/**
+	 * Fluxos registrados, indexados pelo identificador do fluxo, ou <code>null</code> se todos são registrados
+	 */
+	private static final boolean[] flows = parseFlows(System.getProperty("simulador.trace.fluxos"));
+	
+	/**
+	 * Tipos de evento registrados
+	 */
+	private static final Set<EventType> eventTypes = parseEventTypes(System.getProperty("simulador.trace.eventos"));
+	
+	/**
+	 * Buffer circular dos registros. Um registro de evento guarda o tipo, o tempo, o transmissor e o pacote do evento; 
+	 * uma mensagem guarda apenas o objeto da mensagem.
+	 */
+	private static final int capacity = Integer.highestOneBit(Math.max(1, Integer.getInteger("simulador.trace.buffer", 65536)));
+	private static final EventType[] types = new EventType[capacity];
+	private static final long[] times = new long[capacity];
+	private static final Object[] senders = new Object[capacity];
+	private static final Object[] subjects = new Object[capacity];
+	
+	/**
+	 * Número de registros já colocados no buffer
+	 */
+	private static volatile long head;
+	
+	/**
+	 * Número de registros já escritos pela thread de escrita
+	 */
+	private static volatile long tail;
+	
+	/**
+	 * Número de registros já escritos e descarregados no destino
+	 */
+	private static volatile long flushed;
+	
+	/**
+	 * Número de registros descartados por falta de espaço no buffer
+	 */
+	private static long droppedRecords;
+	
+	/**
+	 * Thread que escreve os registros, criada no primeiro registro
+	 */
+	private static volatile Thread writerThread;
+
+	/**
+	 * Indica se os registros do nível passado podem ser escritos, sem considerar os filtros por fluxo e por tipo de evento.
+	 * @param level nível do registro
+	 * @return <code>true</code> se o nível do trace inclui o nível passado
+	 */
+	public static boolean isLevelEnabled(TraceLevel level) {
+		return level.ordinal() <= LEVEL_ORDINAL;
+	}
+
+	/**
+	 * Indica se um registro do nível passado, do fluxo e do tipo de evento passados, deve ser escrito.
+	 * 
+	 * @param level nível do registro
+	 * @param flowId identificador do fluxo TCP, ou -1 se o registro não pertence a um fluxo
+	 * @param type tipo do evento, ou <code>null</code> se o registro não é de um evento
+	 * @return <code>true</code> se o registro deve ser escrito
+	 */
+	public static boolean isEnabled(TraceLevel level, int flowId, EventType type) {
+		if (level.ordinal() > LEVEL_ORDINAL) {
+			return false;
+		}
+		if (flows != null && (flowId < 0 || flowId >= flows.length || !flows[flowId])) {
+			return false;
+		}
+		return type == null || eventTypes.contains(type);
+	}
+	
+	/**
+	 * Registra um evento. Deve ser chamado apenas se o <code>isEnabled</code> permitir.
+	 * <p>
+	 * Os campos do evento são copiados, pois o evento pode ser reaproveitado antes de ser escrito.
+	 * Pelo mesmo motivo, a opção SACK, que é reaproveitada junto com o evento, é formatada já no registro.
+	 * @param event
+	 */
+	public static void event(Event event) {
+		Object subject;
+		if (event.getSackOption().getBlockCount() > 0) {
+			subject = event.getPackageValue() + "(" + event.getSackOption() + ")";
+		} else if (event.getPackageCount() > 1) {
+			subject = event.getPackageValue() + " x" + event.getPackageCount();
+		} else {
+			subject = Long.valueOf(event.getPackageValue());
+		}
+		put(event.getType(), event.getTime(), event.getSender(), subject);
+	}
+	
+	/**
+	 * Registra uma mensagem. Deve ser chamado apenas se o <code>isEnabled</code> permitir.
+	 * @param message objeto que será escrito através do <code>toString</code>. Não deve ser alterado depois de registrado.
+	 */
+	public static void message(Object message) {
+		put(null, 0, null, message);
+	}
+
+	/**
+	 * Coloca um registro no buffer, ou o descarta se o buffer estiver cheio.
+	 * <p>
+	 * Sincronizado apenas entre simulações que registram ao mesmo tempo; a escrita não bloqueia quem registra.
+	 */
+	private static synchronized void put(EventType type, long time, Object sender, Object subject) {
+		long position = head;
+		if (position - tail == capacity) {
+			droppedRecords++;
+			return;
+		}
+		int index = (int) (position & (capacity - 1));
+		types[index] = type;
+		times[index] = time;
+		senders[index] = sender;
+		subjects[index] = subject;
+		head = position + 1;
+		
+		if (writerThread == null) {
+			startWriter();
+		}
+	}
+	
+	/**
+	 * Espera até que todos os registros feitos até agora tenham sido escritos no destino.
+	 * <p>
+	 * Usado ao final da simulação, antes de escrever os resultados, para que eles não se misturem ao trace.
+	 * Desiste se a thread de escrita tiver terminado por um erro de escrita, ou depois de <code>FLUSH_TIMEOUT</code>,
+	 * se o destino estiver bloqueado.
+	 */
+	public static void flush() {
+		long target = head;
+		long deadline = System.nanoTime() + FLUSH_TIMEOUT;
+		Thread writer = writerThread;
+		while (writer != null && writer.isAlive() && flushed < target && System.nanoTime() - deadline < 0) {
+			LockSupport.parkNanos(IDLE_WAIT);
+		}
+	}
+	
+	/**
+	 * Retorna o número de registros descartados por falta de espaço no buffer
+	 * @return droppedRecords
+	 */
+	public static synchronized long getDroppedRecords() {
+		return droppedRecords;
+	}
+
+	/**
+	 * Inicia a thread de escrita, que consome o buffer e descarrega o destino sempre que o buffer fica vazio.
+	 */
+	private static void startWriter() {
+		final Writer writer = openWriter();
+		writerThread = new Thread("trace-simulador") {
+			@Override
+			public void run() {
+				StringBuilder line = new StringBuilder();
+				try {
+					while (true) {
+						long position = tail;
+						if (position < head) {
+							int index = (int) (position & (capacity - 1));
+							line.setLength(0);
+							format(line, types[index], times[index], senders[index], subjects[index]);
+							senders[index] = null;
+							subjects[index] = null;
+							tail = position + 1;
+							writer.write(line.toString());
+						} else {
+							writer.flush();
+							flushed = position;
+							LockSupport.parkNanos(IDLE_WAIT);
+						}
+					}
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		};
+		writerThread.setDaemon(true);
+		writerThread.start();
+		
+		//Escreve o que sobrou no buffer se o programa terminar sem chamar o flush
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				flush();
+			}
+		});
+	}
+
+	/**
+	 * Monta o texto de um registro, no mesmo formato do <code>Event.toString</code> para eventos.
+	 */
+	private static void format(StringBuilder line, EventType type, long time, Object sender, Object subject) {
+		if (type != null) {
+			line.append(type).append(" - ").append(time).append(" - ").append(sender).append(" - ");
+		}
+		line.append(subject).append('\n');
+	}
+
+	/**
+	 * Abre o destino do trace, que é o arquivo configurado ou o console
+	 */
+	private static Writer openWriter() {
+		String file = System.getProperty("simulador.trace.arquivo");
+		try {
+			if (file != null) {
+				return new BufferedWriter(new FileWriter(file));
+			}
+		} catch (IOException e) {
+			System.out.println("Não foi possível abrir o arquivo de trace " + file + ", usando o console");
+		}
+		return new BufferedWriter(new OutputStreamWriter(System.out));
+	}
+
+	/**
+	 * Lê a lista de fluxos registrados
+	 */
+	private static boolean[] parseFlows(String value) {
+		if (value == null || value.trim().isEmpty()) {
+			return null;
+		}
+		String[] ids = value.split(",");
+		int maxId = -1;
+		for (String id : ids) {
+			maxId = Math.max(maxId, Integer.parseInt(id.trim()));
+		}
+		boolean[] result = new boolean[maxId + 1];
+		for (String id : ids) {
+			result[Integer.parseInt(id.trim())] = true;
+		}
+		return result;
+	}
+
+	/**
+	 * Lê a lista de tipos de evento registrados
+	 */
+	private static Set<EventType> parseEventTypes(String value) {
+		if (value == null || value.trim().isEmpty()) {
+			return EnumSet.allOf(EventType.class);
+		}
+		Set<EventType> result = EnumSet.noneOf(EventType.class);
+		for (String type : value.split(",")) {
+			result.add(EventType.valueOf(type.trim()));
+		}
+		return result;
+	}
+}
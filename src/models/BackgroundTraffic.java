@@ -4,6 +4,7 @@ import java.util.Random;
 
 import org.apache.commons.math3.distribution.BinomialDistribution;
 import org.apache.commons.math3.distribution.ExponentialDistribution;
+import org.apache.commons.math3.random.JDKRandomGenerator;
 import org.apache.commons.math3.stat.descriptive.moment.GeometricMean;
 
 import Utils.SimulatorProperties;
@@ -28,23 +29,12 @@ public class BackgroundTraffic implements Listener {
 	/**
 	 * Tamanho médio das rajadas
 	 */
-	private Integer avgGustLength;
+	private int avgGustLength;
 	
 	/**
-	 * Número de pacotes a serem enviados. Gerado aleatoriamente para cada rajada
+	 * Armazena o identificador do próximo pacote a ser enviado.
 	 */
-	private Integer numPackagesToSend;
-	
-	/**
-	 * Número de pacotes enviados numa rajada. 
-	 * Também pode significar o número de pacotes que foram enviados e ainda faltam ser escutados pelo listen()
-	 */
-	private Integer numPackagesSent;
-	
-	/**
-	 * Armazena o próximo pacote a ser enviado.
-	 */
-	private PackageModel nextPackageToSend;
+	private long nextPackageToSend;
 	
 	/**
 	 * Objeto da classe ExponentialDistribuition; usado para gerar o tempo de chegada da rajada no roteador
@@ -55,23 +45,30 @@ public class BackgroundTraffic implements Listener {
 	 * Objeto da classe Random; usado para gerar aleatoriamente o número de pacotes de uma rajada
 	 */
 	private Random randomNumber;
+	
+	/**
+	 * Referência para a instância única do Simulator
+	 */
+	private Simulator simulator;
 
 	
 	/**
 	 * Constrói um tráfego de fundo com as informações sobre as rajadas que transmitirá. 
 	 * <p>
-	 * Este tráfego irá escutar os eventos do tipo <code>EventType.PACKAGE_SENT</code>.
+	 * Este tráfego irá escutar os eventos do tipo <code>EventType.PACKAGE_SENT</code> que ele mesmo enviou.
 	 * 
 	 * @param avgGustLegth 		Tamanho médio das rajadas
 	 * @param avgGustInterval	Intervalo médio das rajadas
 	 */	
-	public BackgroundTraffic(Integer avgGustLength, Double avgGustInterval) {
-		Simulator.getInstance().registerListener(this, EventType.PACKAGE_SENT);
-		this.nextPackageToSend = new PackageModel(0);
+	public BackgroundTraffic(int avgGustLength, double avgGustInterval) {
+		this.nextPackageToSend = 0;
 		this.avgGustLength = avgGustLength;
+		simulator = Simulator.getInstance();
 						
-		this.exponentialDistribution = new ExponentialDistribution(avgGustInterval);
-		randomNumber = new Random(System.nanoTime());
+		JDKRandomGenerator generator = new JDKRandomGenerator();
+		generator.setSeed(simulator.newSeed());
+		this.exponentialDistribution = new ExponentialDistribution(generator, avgGustInterval, ExponentialDistribution.DEFAULT_INVERSE_ABSOLUTE_ACCURACY);
+		randomNumber = new Random(simulator.newSeed());
 		sendGust(0l);
 	}	
 	
@@ -80,49 +77,36 @@ public class BackgroundTraffic implements Listener {
 	 * <p>
 	 * @param time tempo atual
 	 */	
-	private void sendGust(Long time) {
+	private void sendGust(long time) {
 		
 		//Inicializa aleatoreamente, atraves do método round do Java, o número de pacotes da rajada
-		numPackagesToSend = (int) Math.round(gustLength());
-		numPackagesSent = 0;
+		int numPackagesToSend = (int) Math.round(gustLength());
 		
 		//Gera, atraves de uma amostra distribuída exponencialmente, o tempo restante para o início da rajada
-		Long gustTime = (long) exponentialDistribution.sample();
+		long gustTime = (long) exponentialDistribution.sample();
 		if (numPackagesToSend == 0) {
 			//Caso o numero de pacotes da rajada gerado aleatoriamente seja 0, chama novamente sendGust, para o tempo da próxima rajada
 			sendGust(time + gustTime);
 		} else {
-			//Envia todos os pacotes da rajada
-			for (int i = 0; i < numPackagesToSend; i++) {
-				//Dispara evento de chegada de pacote na fila, com o próximo pacote, para o tempo atual + gustTime
-				Simulator.getInstance().shotEvent(this, time+gustTime, time+gustTime, EventType.PACKAGE_SENT, nextPackageToSend);
-				//Cria próximo pacote a ser enviado
-				nextPackageToSend = new PackageModel(nextPackageToSend.getValue() + SimulatorProperties.MSS);
-				numPackagesSent++;
-			}
+			//Dispara um único evento de chegada na fila com todos os pacotes da rajada, para o tempo atual + gustTime
+			simulator.shotEvent(this, this, time+gustTime, time+gustTime, EventType.PACKAGE_SENT, nextPackageToSend, numPackagesToSend);
+			//Passa para o primeiro pacote da próxima rajada
+			nextPackageToSend += numPackagesToSend*SimulatorProperties.MSS;
 		}
 	}
 
 	/**
 	 * Escuta os eventos enviados pelo tráfego de fundo, cujo tipo corresponde a <code>EventType.PACKAGE_SENT</code>.
 	 * <p>
-	 * O evento simula o envio de vários pacotes pelo tráfego de fundo, que ocorrem a uma determinada taxa.<br>
-	 * Como, além do Router, o BackgroundTraffic também escuta eventos do tipo <code>EventType.PACKAGE_SENT</code>,
-	 * a cada evento escutado o numero de pacotes enviados é decrementado, até que todos os eventos de pacotes
-	 * enviados nesta rajada sejam escutados, e assim será chamado novamente sendGust() para enviar a próxima rajada.
+	 * O evento simula a chegada ao roteador de todos os pacotes de uma rajada do tráfego de fundo.<br>
+	 * Como, além do Router, o BackgroundTraffic também é destinatário dos eventos <code>EventType.PACKAGE_SENT</code> que envia,
+	 * ao escutar o evento a rajada já foi recebida pelo roteador, e assim é chamado novamente sendGust() para enviar a próxima rajada.
 	 * 
-	 * @param event evento do tipo <code>EventType.PACKAGE_SENT</code>. <br>
-	 * Caso o evento não tenha sido disparado pelo tráfego de fundo, nada será feito.
+	 * @param event evento do tipo <code>EventType.PACKAGE_SENT</code>, enviado pelo tráfego de fundo.
 	 */
 	@Override
 	public void Listen(Event event) {
-		if (event.getSender().equals(this)) {
-			if (numPackagesSent == 1) {
-				sendGust(event.getTime());
-			}else {
-				numPackagesSent--;
-			}
-		}
+		sendGust(event.getTime());
 	}
 	
 	/**
@@ -137,6 +121,6 @@ public class BackgroundTraffic implements Listener {
 	 * Seleciona nova semente para o número aleatório, para melhorar a aleatoriedade num longo tempo
 	 */
 	public void reseed() {
-		randomNumber = new Random(System.nanoTime());
+		randomNumber = new Random(simulator.newSeed());
 	}
 }
@@ -1,5 +1,6 @@
 package models;
 
+import models.interfaces.Listener;
 import Enum.EventType;
 /**
  * 
@@ -10,27 +11,67 @@ import Enum.EventType;
  */
 public class Event implements Comparable<Event> {
 	/**
-	 * Pacote enviado no caso de PACKAGE_SENT e PACKAGE_DELIVERED
+	 * Identificador do pacote enviado no caso de PACKAGE_SENT e PACKAGE_DELIVERED
 	 * Próximo pacote esperado, no caso de ser um evento do tipo ACK
 	 * Pacote a ser reenviado no caso de TIME_OUT
 	 */
-	private PackageModel packageModel;
+	private long packageValue;
+	/**
+	 * Número de pacotes que chegam juntos ao roteador no caso de PACKAGE_SENT, com identificadores seguidos a partir do packageValue.
+	 * Maior que 1 apenas para as rajadas do tráfego de fundo
+	 */
+	private int packageCount = 1;
 	/**
 	 * Referência para quem enviou esse evento
 	 */
 	private Object sender;
+	/**
+	 * Destinatário do evento, além dos listeners registrados para o tipo do evento. 
+	 * Pode ser <code>null</code>, quando o evento só interessa a esses listeners.
+	 */
+	private Listener target;
 	/**
 	 * Tempo na simulação em que esse evento ocorreu
 	 */
-	private Long time;
+	private long time;
 	/**
 	 * Tempo na simulação em que o pacote foi deixou o servidor
 	 */
-	private Long leaveServerTime;
+	private long leaveServerTime;
 	/**
 	 * Tipo do evento que está sendo representado
 	 */
 	private EventType type;
+	/**
+	 * Indica se o evento está na lista de eventos futuros do simulador, esperando para acontecer
+	 */
+	private boolean scheduled;
+	/**
+	 * Indica se o evento foi cancelado, e portanto não deve mais acontecer
+	 */
+	private boolean cancelled;
+	/**
+	 * Posição do evento na estrutura da lista de eventos futuros que o guarda, quando ela precisa dessa informação
+	 */
+	private Object queueNode;
+	/**
+	 * Número de objetos que guardaram uma referência para o evento depois que ele aconteceu. 
+	 * Enquanto for maior que zero, o evento não pode ser reaproveitado pelo <code>EventPool</code>
+	 */
+	private int retainCount;
+	/**
+	 * Número de sequência do disparo do evento, que desempata eventos do mesmo instante e do mesmo tipo
+	 */
+	private long sequence;
+	/**
+	 * Trem de pacotes transportado pelo evento, no modo <code>TransmissionMode.TRAIN</code>. 
+	 * Criado no primeiro uso e reaproveitado junto com o evento
+	 */
+	private PackageTrain train;
+	/**
+	 * Opção SACK de um evento do tipo ACK. Criada no primeiro uso e reaproveitada junto com o evento
+	 */
+	private SackOption sackOption;
 
 	/**
 	 * 
@@ -39,12 +80,12 @@ public class Event implements Comparable<Event> {
 	 * @param eventType tipo do evento sendo representado
 	 * @param time tempo em que o evento ocorreu
 	 * @param sender quem enviou o evento
-	 * @param packageModel
+	 * @param packageValue identificador do pacote
 	 */	
-	public Event(PackageModel packageModel, Object sender, Long time,
-			Long leaveServerTime, EventType type) {
+	public Event(long packageValue, Object sender, long time,
+			long leaveServerTime, EventType type) {
 		super();
-		this.packageModel = packageModel;
+		this.packageValue = packageValue;
 		this.sender = sender;
 		this.time = time;
 		this.leaveServerTime = leaveServerTime;
@@ -52,19 +93,100 @@ public class Event implements Comparable<Event> {
 	}
 
 	/**
-	 * Retorna uma referência para o pacote do evento
-	 * @return packageModel
+	 * 
+	 * Construtor de um evento endereçado a um destinatário específico.
+	 * 
+	 * @param eventType tipo do evento sendo representado
+	 * @param time tempo em que o evento ocorreu
+	 * @param sender quem enviou o evento
+	 * @param target quem deve receber o evento
+	 * @param packageValue identificador do pacote
+	 */	
+	public Event(long packageValue, Object sender, Listener target, long time,
+			long leaveServerTime, EventType type) {
+		this(packageValue, sender, time, leaveServerTime, type);
+		this.target = target;
+	}
+
+	/**
+	 * Reinicializa um evento já usado com novos atributos, para que seja reaproveitado pelo <code>EventPool</code>.
 	 */
-	public PackageModel getPackageModel() {
-		return packageModel;
+	void reset(long packageValue, Object sender, Listener target, long time,
+			long leaveServerTime, EventType type) {
+		this.packageValue = packageValue;
+		this.sender = sender;
+		this.target = target;
+		this.time = time;
+		this.leaveServerTime = leaveServerTime;
+		this.type = type;
+		packageCount = 1;
+		scheduled = false;
+		cancelled = false;
+		queueNode = null;
+		retainCount = 0;
+		sequence = 0;
+		if (train != null) {
+			train.clear();
+		}
+		if (sackOption != null) {
+			sackOption.clear();
+		}
+	}
+
+	/**
+	 * Retorna o identificador do pacote do evento
+	 * @return packageValue
+	 */
+	public long getPackageValue() {
+		return packageValue;
 	}
 
 	/**
-	 * Substitui o campo packageModel
-	 * @param packageModel
+	 * Substitui o identificador do pacote do evento
+	 * @param packageValue
 	 */
-	public void setPackageModel(PackageModel packageModel) {
-		this.packageModel = packageModel;
+	public void setPackageValue(long packageValue) {
+		this.packageValue = packageValue;
+	}
+
+	/**
+	 * Retorna o número de pacotes que chegam juntos ao roteador
+	 * @return packageCount
+	 */
+	public int getPackageCount() {
+		return packageCount;
+	}
+
+	/**
+	 * Substitui o número de pacotes que chegam juntos ao roteador
+	 * @param packageCount
+	 */
+	public void setPackageCount(int packageCount) {
+		this.packageCount = packageCount;
+	}
+
+	/**
+	 * Retorna a opção SACK do evento, com os pacotes recebidos fora de ordem pelo receptor que enviou o ACK.
+	 * <p>
+	 * A opção é reaproveitada junto com o evento, e não deve ser guardada depois que o evento for tratado.
+	 * @return opção SACK, ou <code>SackOption.EMPTY</code> se o evento não tiver blocos
+	 */
+	public SackOption getSackOption() {
+		return sackOption != null ? sackOption : SackOption.EMPTY;
+	}
+
+	/**
+	 * Substitui a opção SACK do evento, copiando os blocos da opção passada
+	 * @param sackOption opção copiada
+	 */
+	public void setSackOption(SackOption sackOption) {
+		if (this.sackOption == null) {
+			if (sackOption.getBlockCount() == 0) {
+				return;
+			}
+			this.sackOption = new SackOption();
+		}
+		this.sackOption.copyFrom(sackOption);
 	}
 
 	/**
@@ -83,11 +205,27 @@ public class Event implements Comparable<Event> {
 		this.sender = sender;
 	}
 
+	/**
+	 * Retorna o destinatário do evento.
+	 * @return destinatário, ou <code>null</code> se o evento não for endereçado
+	 */
+	public Listener getTarget() {
+		return target;
+	}
+
+	/**
+	 * Substitui o destinatário do evento.
+	 * @param target destinatário do evento
+	 */
+	public void setTarget(Listener target) {
+		this.target = target;
+	}
+
 	/**
 	 * Retorna o tempo em que este evento o ocorreu na simulação.
 	 * @return tempo em que o evento ocorreu.
 	 */
-	public Long getTime() {
+	public long getTime() {
 		return time;
 	}
 
@@ -95,14 +233,15 @@ public class Event implements Comparable<Event> {
 	 * Substitui o tempo armazenado em que o evento ocorreu pelo novo tempo especificado.
 	 * @param time tempo em que o evento ocorreu.
 	 */
-	public void setTime(Long time) {
+	public void setTime(long time) {
 		this.time = time;
 	}
 
 	/**
 	 * Retorna o tempo em que o pacote deixou o servidor
 	 * @return leaveServerTime
-	 */	public Long leaveServerTime() {
+	 */
+	public long leaveServerTime() {
 		return leaveServerTime;
 	}
 
@@ -110,7 +249,7 @@ public class Event implements Comparable<Event> {
 	 * Substitui o tempo em que o pacote deixou o servidor
 	 * @param leaveServerTime
 	 */
-	 public void leaveServerTime(Long leaveServerTime) {
+	public void leaveServerTime(long leaveServerTime) {
 		this.leaveServerTime = leaveServerTime;
 	}
 
@@ -130,13 +269,153 @@ public class Event implements Comparable<Event> {
 		this.type = type;
 	}
 
+	/**
+	 * Indica se o evento está agendado na lista de eventos futuros.
+	 * @return scheduled
+	 */
+	public boolean isScheduled() {
+		return scheduled;
+	}
+
+	/**
+	 * Marca o evento como agendado ou não. Usado pela lista de eventos futuros.
+	 * @param scheduled
+	 */
+	public void setScheduled(boolean scheduled) {
+		this.scheduled = scheduled;
+	}
+
+	/**
+	 * Indica se o evento foi cancelado.
+	 * @return cancelled
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Marca o evento como cancelado. Usado pela lista de eventos futuros.
+	 * @param cancelled
+	 */
+	public void setCancelled(boolean cancelled) {
+		this.cancelled = cancelled;
+	}
+
+	/**
+	 * Retorna a posição do evento na lista de eventos futuros que o guarda.
+	 * @return queueNode
+	 */
+	public Object getQueueNode() {
+		return queueNode;
+	}
+
+	/**
+	 * Substitui a posição do evento na lista de eventos futuros. Usado pela lista de eventos futuros.
+	 * @param queueNode
+	 */
+	public void setQueueNode(Object queueNode) {
+		this.queueNode = queueNode;
+	}
+
+	/**
+	 * Retorna o número de sequência do disparo do evento.
+	 * @return sequence
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * Substitui o número de sequência do disparo do evento. Usado pelo simulador ao disparar o evento.
+	 * @param sequence
+	 */
+	public void setSequence(long sequence) {
+		this.sequence = sequence;
+	}
+
+	/**
+	 * Indica se o evento está retido por alguém, e portanto não pode ser reaproveitado.
+	 * @return <code>true</code> se alguém ainda guarda uma referência para o evento
+	 */
+	public boolean isRetained() {
+		return retainCount > 0;
+	}
+
+	/**
+	 * Marca o evento como retido. 
+	 * <p>
+	 * Deve ser chamado por quem guardar uma referência para o evento depois que ele acontecer ou for cancelado,
+	 * para que o <code>EventPool</code> não o reaproveite para outro evento. 
+	 * Quando não precisar mais do evento, quem o reteve deve devolvê-lo através do <code>Simulator.releaseEvent</code>.
+	 */
+	public void retain() {
+		retainCount++;
+	}
+
+	/**
+	 * Desfaz uma retenção feita através do <code>retain()</code>. Usado pelo simulador ao devolver o evento.
+	 */
+	public void unretain() {
+		retainCount--;
+	}
+
+	/**
+	 * Retorna o trem de pacotes transportado pelo evento.
+	 * @return trem, ou <code>null</code> se o evento não transporta um trem
+	 */
+	public PackageTrain getTrain() {
+		return train != null && train.isActive() ? train : null;
+	}
+
+	/**
+	 * Passa a transportar um trem de pacotes, ainda vazio. 
+	 * O primeiro pacote acrescentado deve ser o pacote do evento, com o número de sequência do evento.
+	 * @param spacing intervalo entre as chegadas dos pacotes ao roteador
+	 * @return trem
+	 */
+	public PackageTrain startTrain(long spacing) {
+		if (train == null) {
+			train = new PackageTrain();
+		}
+		train.start(spacing);
+		return train;
+	}
+
+	/**
+	 * Passa o evento para o próximo pacote do trem, que acontece um intervalo do trem depois, 
+	 * com o número de sequência reservado para ele. Usado pelo simulador depois que o pacote atual chega ao roteador.
+	 * @return <code>true</code> se havia um próximo pacote, e o evento deve ser agendado outra vez
+	 */
+	public boolean advanceTrain() {
+		if (!train.advance()) {
+			return false;
+		}
+		int head = train.getHead();
+		packageValue = train.getValue(head);
+		sequence = train.getSequence(head);
+		time += train.getSpacing();
+		leaveServerTime += train.getSpacing();
+		return true;
+	}
+
 	/**
 	 * Realiza uma comparação entre este evento e um outro evento.
-	 * Neste caso, a comparação está sendo feita pelo tempo em que o evento ocorreu.
+	 * <p>
+	 * A comparação é feita pelo tempo em que o evento ocorre, depois pela prioridade do tipo do evento,
+	 * e por último pela sequência de disparo. Assim, dois eventos distintos nunca são iguais,
+	 * e todas as listas de eventos futuros retornam os eventos na mesma ordem.
+	 * 
+	 * @see EventType#getPriority()
 	 */
 	@Override
 	public int compareTo(Event arg0) {
-		return this.time.compareTo(arg0.time);
+		if (time != arg0.time) {
+			return time < arg0.time ? -1 : 1;
+		}
+		if (type != arg0.type) {
+			return type.getPriority() < arg0.type.getPriority() ? -1 : 1;
+		}
+		return sequence < arg0.sequence ? -1 : (sequence == arg0.sequence ? 0 : 1);
 	}
 	
 	/**
@@ -145,6 +424,12 @@ public class Event implements Comparable<Event> {
 	 */
 	@Override
 	public String toString() {
-		return type+" - "+time+" - "+sender+" - "+packageModel;
+		if (getSackOption().getBlockCount() > 0) {
+			return type+" - "+time+" - "+sender+" - "+packageValue+"("+sackOption+")";
+		}
+		if (packageCount > 1) {
+			return type+" - "+time+" - "+sender+" - "+packageValue+" x"+packageCount;
+		}
+		return type+" - "+time+" - "+sender+" - "+packageValue;
 	}
 }
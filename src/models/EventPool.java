@@ -0,0 +1,133 @@
+package models;
+
+import java.util.Arrays;
+
+import models.interfaces.Listener;
+import Enum.EventType;
+
+/**
+ *
+ * Reservatório de eventos já usados, para que o simulador reaproveite os objetos <code>Event</code>
+ * em vez de criar um novo a cada evento disparado.
+ * <p>
+ * Um evento volta para o reservatório quando acontece ou quando é retirado da lista de eventos futuros por cancelamento,
+ * a não ser que tenha sido retido através do <code>Event.retain()</code>. Nesse caso, volta quando o último
+ * objeto que o reteve o devolver através do <code>Simulator.releaseEvent</code>.
+ * Em regime permanente, quase todo evento disparado reaproveita um objeto do reservatório.
+ *
+ * @see Event
+ */
+public class EventPool {
+
+	/**
+	 * Tamanho inicial da pilha de eventos livres
+	 */
+	private static final int INITIAL_CAPACITY = 1024;
+
+	/**
+	 * Pilha de eventos livres
+	 */
+	private Event[] freeEvents;
+
+	/**
+	 * Número de eventos livres na pilha
+	 */
+	private int size;
+
+	/**
+	 * Número de eventos criados pelo reservatório
+	 */
+	private long createdEvents;
+
+	/**
+	 * Número de eventos reaproveitados pelo reservatório
+	 */
+	private long reusedEvents;
+
+	public EventPool() {
+		freeEvents = new Event[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Retorna um evento com os atributos passados, reaproveitando um evento livre se houver.
+	 *
+	 * @param packageValue identificador do pacote
+	 * @param sender quem enviou o evento
+	 * @param target quem deve receber o evento, ou <code>null</code>
+	 * @param time tempo em que o evento ocorre
+	 * @param leaveServerTime tempo em que o pacote deixou o servidor
+	 * @param type tipo do evento
+	 * @return evento inicializado
+	 */
+	public Event acquire(long packageValue, Object sender, Listener target, long time, long leaveServerTime, EventType type) {
+		if (size == 0) {
+			createdEvents++;
+			return new Event(packageValue, sender, target, time, leaveServerTime, type);
+		}
+
+		reusedEvents++;
+		Event event = freeEvents[--size];
+		freeEvents[size] = null;
+		event.reset(packageValue, sender, target, time, leaveServerTime, type);
+		return event;
+	}
+
+	/**
+	 * Devolve um evento que não está mais na lista de eventos futuros. Se o evento tiver sido retido, nada é feito.
+	 * @param event
+	 */
+	public void release(Event event) {
+		//Evento retido, ou já devolvido
+		if (event.isRetained() || event.getType() == null) {
+			return;
+		}
+		if (size == freeEvents.length) {
+			freeEvents = Arrays.copyOf(freeEvents, 2*freeEvents.length);
+		}
+
+		//Solta as referências do evento, para não segurar servidores e receptores
+		event.reset(0, null, null, 0, 0, null);
+		freeEvents[size++] = event;
+	}
+
+	/**
+	 * Passa eventos livres para outro reservatório. Usado pelo simulador para equilibrar os reservatórios dos processos lógicos,
+	 * já que um evento volta para o reservatório de quem o tratou, e não de quem o criou.
+	 * @param target reservatório que recebe os eventos
+	 * @param count número de eventos, limitado ao de eventos livres deste reservatório
+	 */
+	public void moveTo(EventPool target, int count) {
+		count = Math.min(count, size);
+		if (target.size + count > target.freeEvents.length) {
+			target.freeEvents = Arrays.copyOf(target.freeEvents, Math.max(2*target.freeEvents.length, target.size + count));
+		}
+		System.arraycopy(freeEvents, size - count, target.freeEvents, target.size, count);
+		Arrays.fill(freeEvents, size - count, size, null);
+		size -= count;
+		target.size += count;
+	}
+
+	/**
+	 * Retorna o número de eventos livres no reservatório
+	 * @return size
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Retorna o número de eventos criados pelo reservatório
+	 * @return createdEvents
+	 */
+	public long getCreatedEvents() {
+		return createdEvents;
+	}
+
+	/**
+	 * Retorna o número de eventos reaproveitados pelo reservatório
+	 * @return reusedEvents
+	 */
+	public long getReusedEvents() {
+		return reusedEvents;
+	}
+}
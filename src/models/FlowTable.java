@@ -0,0 +1,195 @@
+package models;
+
+import java.util.Arrays;
+
+import Enum.ServerStatus;
+
+/**
+ *
+ * Tabela com o estado de todas as sessões TCP da simulação, indexada pelo identificador do fluxo.
+ * <p>
+ * Cada variável de estado é guardada em um vetor próprio, com uma posição por fluxo, em vez de em um objeto por sessão.
+ * O <code>Server</code> e o <code>Receiver</code> de um fluxo são apenas visões sobre a sua linha da tabela,
+ * que guardam o identificador do fluxo e tratam os eventos endereçados a ele.
+ * Assim, o custo de memória de uma sessão é basicamente o das suas posições nos vetores e dos seus buffers de pacotes.
+ * <p>
+ * Os vetores dobram de tamanho quando um fluxo não cabe neles.
+ *
+ * @see Server
+ * @see Receiver
+ */
+public class FlowTable {
+
+	/**
+	 * Modos de transmissão, indexados pelo valor guardado em <code>status</code>
+	 */
+	private static final ServerStatus[] STATUS = ServerStatus.values();
+
+	/**
+	 * Número de fluxos da tabela
+	 */
+	private int size;
+
+	//Transmissor===========================
+	//======================================
+
+	/**
+	 * Taxa com que o servidor envia pacotes para o roteador, em bytes por segundo
+	 */
+	long[] broadcastRate;
+
+	/**
+	 * Janela de transmissão, em bytes: todos os bytes que em um dado momento podem estar em transmissão, pendentes de recebimento de ACK
+	 */
+	double[] cwnd;
+
+	/**
+	 * Threshold com o qual o TCP está operando, em bytes
+	 */
+	double[] threshold;
+
+	/**
+	 * Modo de transmissão, pela posição em <code>ServerStatus.values()</code>
+	 */
+	private byte[] status;
+
+	/**
+	 * Último tempo de retorno medido, o tempo de retorno esperado e o seu desvio
+	 */
+	long[] rtt;
+	long[] expectedReturnTime;
+	long[] deviationReturnTime;
+
+	/**
+	 * Identificador do pacote do último ACK recebido (snd_una)
+	 */
+	long[] lastAck;
+
+	/**
+	 * Identificador do próximo pacote a ser enviado (snd_nxt)
+	 */
+	long[] nextPackageToSend;
+
+	/**
+	 * Número de pacotes a serem enviados na janela e de ACKs duplicados recebidos
+	 */
+	int[] numOfPackages;
+	int[] duplicatedAcks;
+
+	/**
+	 * Placar dos pacotes em trânsito
+	 */
+	Scoreboard[] scoreboards;
+
+	/**
+	 * Timer de retransmissão único da conexão, usado no modo <code>TimeoutMode.PER_FLOW</code>.
+	 * <p>
+	 * Cobre um pacote pendente de confirmação, que é o pacote do evento, e é reiniciado a cada ACK que confirma dados novos.
+	 * Quando o pacote coberto é confirmado por um bloco SACK, o timer não é cancelado: ao acontecer, ele é apenas rearmado para o próximo pacote pendente.
+	 */
+	Event[] retransmissionTimers;
+
+	//Receptor==============================
+	//======================================
+
+	/**
+	 * Buffer de reordenação do receptor
+	 */
+	ReorderBuffer[] reorderBuffers;
+
+	/**
+	 * Espera do ACK atrasado do receptor, no modo <code>AckMode.DELAYED</code>
+	 */
+	Event[] delayedAckTimers;
+
+	/**
+	 * Opção SACK reaproveitada pelos receptores para montar os blocos de cada ACK.
+	 * Os blocos são copiados para o evento do ACK, então uma única opção serve a todos os fluxos.
+	 */
+	final SackOption sackOption = new SackOption();
+
+	/**
+	 * Cria uma tabela vazia
+	 * @param initialCapacity número inicial de fluxos dos vetores
+	 */
+	public FlowTable(int initialCapacity) {
+		int capacity = Math.max(1, initialCapacity);
+		broadcastRate = new long[capacity];
+		cwnd = new double[capacity];
+		threshold = new double[capacity];
+		status = new byte[capacity];
+		rtt = new long[capacity];
+		expectedReturnTime = new long[capacity];
+		deviationReturnTime = new long[capacity];
+		lastAck = new long[capacity];
+		nextPackageToSend = new long[capacity];
+		numOfPackages = new int[capacity];
+		duplicatedAcks = new int[capacity];
+		scoreboards = new Scoreboard[capacity];
+		retransmissionTimers = new Event[capacity];
+		reorderBuffers = new ReorderBuffer[capacity];
+		delayedAckTimers = new Event[capacity];
+	}
+
+	/**
+	 * Acrescenta uma linha à tabela para o fluxo, com todos os valores zerados
+	 * @param flowId identificador do fluxo, que deve ser o número de fluxos da tabela
+	 */
+	void addFlow(int flowId) {
+		if (flowId != size) {
+			throw new IllegalArgumentException("Fluxo " + flowId + " fora de ordem na tabela de " + size + " fluxos");
+		}
+		if (size == cwnd.length) {
+			grow();
+		}
+		size++;
+	}
+
+	/**
+	 * Retorna o número de fluxos da tabela
+	 * @return size
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Retorna o modo de transmissão do fluxo
+	 * @param flowId
+	 * @return status
+	 */
+	ServerStatus getStatus(int flowId) {
+		return STATUS[status[flowId]];
+	}
+
+	/**
+	 * Substitui o modo de transmissão do fluxo
+	 * @param flowId
+	 * @param serverStatus
+	 */
+	void setStatus(int flowId, ServerStatus serverStatus) {
+		status[flowId] = (byte) serverStatus.ordinal();
+	}
+
+	/**
+	 * Dobra o tamanho dos vetores, mantendo os fluxos
+	 */
+	private void grow() {
+		int capacity = 2*cwnd.length;
+		broadcastRate = Arrays.copyOf(broadcastRate, capacity);
+		cwnd = Arrays.copyOf(cwnd, capacity);
+		threshold = Arrays.copyOf(threshold, capacity);
+		status = Arrays.copyOf(status, capacity);
+		rtt = Arrays.copyOf(rtt, capacity);
+		expectedReturnTime = Arrays.copyOf(expectedReturnTime, capacity);
+		deviationReturnTime = Arrays.copyOf(deviationReturnTime, capacity);
+		lastAck = Arrays.copyOf(lastAck, capacity);
+		nextPackageToSend = Arrays.copyOf(nextPackageToSend, capacity);
+		numOfPackages = Arrays.copyOf(numOfPackages, capacity);
+		duplicatedAcks = Arrays.copyOf(duplicatedAcks, capacity);
+		scoreboards = Arrays.copyOf(scoreboards, capacity);
+		retransmissionTimers = Arrays.copyOf(retransmissionTimers, capacity);
+		reorderBuffers = Arrays.copyOf(reorderBuffers, capacity);
+		delayedAckTimers = Arrays.copyOf(delayedAckTimers, capacity);
+	}
+}
@@ -0,0 +1,187 @@
+package models;
+
+import java.util.Arrays;
+
+/**
+ * 
+ * Trem de pacotes: pacotes de uma mesma janela de transmissão, enviados um após o outro pelo servidor.
+ * <p>
+ * O trem é transportado por um único evento <code>EventType.PACKAGE_SENT</code>, que representa sempre o primeiro pacote
+ * do trem que ainda não chegou ao roteador. Quando esse pacote chega, o simulador passa o evento para o pacote seguinte,
+ * que chega ao roteador um tempo de serviço do servidor depois, e o agenda outra vez.
+ * <p>
+ * Cada pacote guarda o número de sequência de disparo que teria se fosse enviado em um evento próprio, 
+ * de forma que a ordem dos eventos, e portanto os resultados, são os mesmos do modo <code>TransmissionMode.PER_PACKAGE</code>.
+ * <p>
+ * O trem pertence ao evento e é reaproveitado junto com ele pelo <code>EventPool</code>.
+ * 
+ * @see Event#getTrain()
+ */
+public class PackageTrain {
+
+	/**
+	 * Capacidade inicial dos vetores do trem
+	 */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * Identificadores dos pacotes do trem, na ordem de envio
+	 */
+	private long[] values;
+
+	/**
+	 * Números de sequência de disparo reservados para cada pacote
+	 */
+	private long[] sequences;
+
+	/**
+	 * Posição do primeiro pacote que ainda não chegou ao roteador
+	 */
+	private int head;
+
+	/**
+	 * Número de pacotes do trem
+	 */
+	private int size;
+
+	/**
+	 * Intervalo entre as chegadas de dois pacotes seguidos ao roteador, que é o tempo de serviço do servidor
+	 */
+	private long spacing;
+
+	/**
+	 * Indica se o trem está em uso pelo evento
+	 */
+	private boolean active;
+
+	PackageTrain() {
+		values = new long[INITIAL_CAPACITY];
+		sequences = new long[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Inicia um trem vazio
+	 * @param spacing intervalo entre as chegadas dos pacotes ao roteador
+	 */
+	void start(long spacing) {
+		clear();
+		this.spacing = spacing;
+		active = true;
+	}
+
+	/**
+	 * Esvazia o trem e o marca como fora de uso
+	 */
+	void clear() {
+		head = 0;
+		size = 0;
+		active = false;
+	}
+
+	/**
+	 * Passa para o próximo pacote do trem
+	 * @return <code>true</code> se ainda há pacote que não chegou ao roteador
+	 */
+	boolean advance() {
+		head++;
+		return head < size;
+	}
+
+	/**
+	 * Indica se o trem está em uso pelo evento
+	 * @return active
+	 */
+	boolean isActive() {
+		return active;
+	}
+
+	/**
+	 * Acrescenta um pacote ao fim do trem. Os pacotes devem ser acrescentados em ordem crescente de identificador.
+	 * @param value identificador do pacote
+	 * @param sequence número de sequência de disparo reservado para o pacote
+	 */
+	public void add(long value, long sequence) {
+		if (size == values.length) {
+			values = Arrays.copyOf(values, 2*size);
+			sequences = Arrays.copyOf(sequences, 2*size);
+		}
+		values[size] = value;
+		sequences[size] = sequence;
+		size++;
+	}
+
+	/**
+	 * Procura, entre os pacotes que ainda não chegaram ao roteador, a posição de um pacote
+	 * @param value identificador do pacote
+	 * @return posição do pacote, ou -1 se ele não estiver no trem ou já tiver chegado ao roteador
+	 */
+	public int indexOf(long value) {
+		int low = head;
+		int high = size - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			long middleValue = values[middle];
+			if (middleValue < value) {
+				low = middle + 1;
+			} else if (middleValue > value) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Retira do trem o pacote da posição e todos os seguintes, que deixam de ser enviados
+	 * @param index posição do primeiro pacote retirado, posterior ao primeiro pacote que ainda não chegou ao roteador
+	 */
+	public void truncate(int index) {
+		if (index <= head) {
+			throw new IllegalArgumentException("Trem só pode ser cortado depois do próximo pacote");
+		}
+		size = index;
+	}
+
+	/**
+	 * Retorna o identificador do pacote de uma posição do trem
+	 * @param index posição
+	 * @return identificador do pacote
+	 */
+	public long getValue(int index) {
+		return values[index];
+	}
+
+	/**
+	 * Retorna o número de sequência de disparo reservado para o pacote de uma posição do trem
+	 * @param index posição
+	 * @return número de sequência
+	 */
+	public long getSequence(int index) {
+		return sequences[index];
+	}
+
+	/**
+	 * Retorna a posição do primeiro pacote que ainda não chegou ao roteador
+	 * @return head
+	 */
+	public int getHead() {
+		return head;
+	}
+
+	/**
+	 * Retorna o número de pacotes do trem, incluindo os que já chegaram ao roteador
+	 * @return size
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Retorna o intervalo entre as chegadas de dois pacotes seguidos ao roteador
+	 * @return spacing
+	 */
+	public long getSpacing() {
+		return spacing;
+	}
+}
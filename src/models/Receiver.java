@@ -1,12 +1,10 @@
 package models;
 
-import java.util.Set;
-import java.util.TreeSet;
-
 import Utils.SimulatorProperties;
 
 import models.interfaces.Listener;
 import Controller.Simulator;
+import Enum.AckMode;
 import Enum.EventType;
 
 /**
@@ -15,8 +13,11 @@ import Enum.EventType;
  * <p>
  * Sua função é simular uma estação receptora de uma sessão TCP aberta, tendo, portanto, seu par Transmissor.
  * O receptor irá simular o recebimento de pacotes e então enviar o ACK correspondente, em resposta ao servidor.
+ * <p>
+ * O buffer de reordenação e a espera do ACK atrasado ficam na <code>FlowTable</code> da simulação, na linha do fluxo do servidor.
  *
  * @see Server
+ * @see FlowTable
  */
 public class Receiver implements Listener {
 
@@ -25,40 +26,72 @@ public class Receiver implements Listener {
 	 */
 	private Server server;
 	
-	/**
-	 * Indica o próximo pacote a ser recebido.
-	 */
-	private PackageModel nextPackage;
 	/**
 	 * Guarda instancia única do simulador 
 	 */
 	private Simulator simulator;
 	
 	/**
-	 * Conjunto de pacotes recebidos.
+	 * Capacidade inicial, em pacotes, do buffer de reordenação
+	 */
+	private static final int INITIAL_REORDER_CAPACITY = 64;
+	
+	/**
+	 * Tempo máximo de espera de um ACK atrasado, no modo <code>AckMode.DELAYED</code>, em nanossegundos. A RFC 1122 exige menos de 500 ms
+	 */
+	private static final long DELAYED_ACK_TIME = 200l*1000l*1000l;
+	
+	/**
+	 * Identificador do fluxo TCP do servidor deste receptor
 	 */
-	private Set<PackageModel> receivedPackages;
+	private int flowId;
+	
+	/**
+	 * Tabela de estado dos fluxos, onde ficam o buffer de reordenação e a espera do ACK atrasado deste receptor
+	 */
+	private FlowTable flows;
 
 	/**
-	 * Constrói uma estação TCP receptora que irá escutar os eventos do tipo <code>EventType.PACKAGE_DELIVERED</code>.
+	 * Constrói uma estação TCP receptora que irá escutar os eventos do tipo <code>EventType.PACKAGE_DELIVERED</code> endereçados a ela.
 	 * Por padrão, inicializa o próximo pacote a ser recebido como value 0.
 	 * @param server servidor que manda pacotes excluivamente para este receptor
 	 */	
 	public Receiver(Server server) {
 		super();
 		this.server = server;
-		nextPackage = new PackageModel(0);
-		
-		receivedPackages = new TreeSet<PackageModel>();
+		flowId = server.getFlowId();
 		
 		simulator = Simulator.getInstance();
-		simulator.registerListener(this, EventType.PACKAGE_DELIVERED);
+		flows = simulator.getFlowTable();
+		flows.reorderBuffers[flowId] = new ReorderBuffer(INITIAL_REORDER_CAPACITY);
 	}
 
 	/**
 	 * Implementação do método responsável por escutar os eventos.
 	 * <p>
-	 * Ele irá escutar os eventos do tipo <code>EventType.PACKAGE_DELIVERED</code>, enviados pela estação transmissora(roteador) que está servindo ele.
+	 * Ele irá escutar os eventos do tipo <code>EventType.PACKAGE_DELIVERED</code> dos pacotes da estação transmissora que está servindo ele, endereçados a ele pelo roteador,
+	 * e os eventos do tipo <code>EventType.DELAYED_ACK</code> disparados por ele mesmo.
+	 *  
+	 * @param event evento que será escutado.
+	 */
+	@Override
+	public void Listen(Event event) {
+		switch (event.getType()) {
+		case PACKAGE_DELIVERED:
+			listenPackage(event);
+			break;
+		case DELAYED_ACK:
+			//Fim da espera: confirma o pacote recebido em ordem
+			flows.delayedAckTimers[flowId] = null;
+			sendAck(event);
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Trata a entrega de um pacote.
 	 * <p>
 	 * Caso o pacote recebido corresponda ao próximo pacote que ele estava esperando, o receptor então atualiza o próximo pacote esperado,
 	 * levando em consideração os pacotes que ele já tenha recebido, enquanto esperava pelo próximo pacote esperado.
@@ -66,56 +99,73 @@ public class Receiver implements Listener {
 	 * No caso dele receber um pacote que não seja o esperado, ele então armazena o pacote no conjunto de pacotes recebidos.
 	 * <p>
 	 * Após essas verificações, o ACK correspondente ao recebimento do pacote é então enviado, contendo o um pacote que guarda a lista de pacotes recebidos no sackOption.
-	 *  
-	 * @param event evento que será escutado. Se a estação transmissora não corresponder ao Server desta estação, nada será feito.
+	 * No modo <code>AckMode.DELAYED</code>, o ACK de um pacote recebido em ordem que não preenche um buraco é atrasado, 
+	 * até a chegada do próximo pacote em ordem ou o fim da espera.
+	 * 
+	 * @param event evento do tipo <code>EventType.PACKAGE_DELIVERED</code>
 	 */
-	@Override
-	public void Listen(Event event) {
-		if (event.getSender().equals(getServer())) {
-			PackageModel eventPackage = event.getPackageModel();
-						
-			if (eventPackage.equals(nextPackage)) {
-				
-				//Procura próximo pacote ainda não recebido
-				nextPackage = new PackageModel(nextPackage.getValue() + SimulatorProperties.MSS);
-				Set<PackageModel> packagesToRemove = new TreeSet<PackageModel>();
-				
-				while (receivedPackages.contains(nextPackage)) {
-					packagesToRemove.add(nextPackage);
-					nextPackage = new PackageModel(nextPackage.getValue() + SimulatorProperties.MSS);
-				}
-				
-				//Limpa pacotes da primeira sequencia completa da lista de recebidos.
-				receivedPackages.removeAll(packagesToRemove);
-				nextPackage.setSackOption(receivedPackages);
-				sendAck(event);
-			} else if (eventPackage.compareTo(nextPackage) == 1 && !receivedPackages.contains(eventPackage)){ //Se o pacote recebido for posterior ao esperado. Se for anterior ignora, pois já foi recebido
-				receivedPackages.add(eventPackage);
+	private void listenPackage(Event event) {
+		long value = event.getPackageValue();
+		long nextValue = reorderBuffer().getNextValue();
+					
+		if (value == nextValue) {
+			//Pacote que preenche um buraco é confirmado imediatamente, para acelerar a recuperação
+			boolean fillsHole = !reorderBuffer().isEmpty();
+			//Avança até o próximo pacote ainda não recebido, limpando a primeira sequência completa dos recebidos
+			reorderBuffer().advance();
+			if (SimulatorProperties.ackMode == AckMode.DELAYED && !fillsHole) {
+				delayAck(event);
+			} else {
 				sendAck(event);
 			}
-			
-		}				
+		} else if (value > nextValue && !reorderBuffer().contains(value)) { //Se o pacote recebido for posterior ao esperado. Se for anterior ignora, pois já foi recebido
+			reorderBuffer().add(value);
+			sendAck(event);
+		}
+	}
+
+	/**
+	 * Atrasa o ACK de um pacote recebido em ordem. Se já houver um pacote esperando confirmação, 
+	 * confirma os dois imediatamente. Senão, agenda o fim da espera.
+	 * 
+	 * @param event evento do recebimento do pacote
+	 */
+	private void delayAck(Event event) {
+		if (flows.delayedAckTimers[flowId] != null) {
+			sendAck(event);
+		} else {
+			//O fim da espera guarda o tempo de saída do servidor do pacote, usado no cálculo do RTT
+			flows.delayedAckTimers[flowId] = simulator.shotEvent(this, this, event.getTime() + DELAYED_ACK_TIME, event.leaveServerTime(), EventType.DELAYED_ACK, event.getPackageValue());
+		}
 	}
 
 	/**
 	 * Envia o ACK correspondente ao recebimento de um pacote.
 	 * <p>
 	 * Dispara um evento que simula o envio de um ACK, informando o próximo pacote esperado, 
-	 * assim como os pacotes posteriores que já foram recebidos.
+	 * assim como os pacotes posteriores que já foram recebidos, agrupados em blocos contíguos.
 	 *  
-	 * @param event evento do recebimento de um pacote
+	 * @param event evento do recebimento de um pacote, ou do fim da espera de um ACK atrasado
 	 */
 	private void sendAck(Event event) {
-		Set<PackageModel> newReceivedPackages = new TreeSet<PackageModel>();
-		PackageModel returnPackage = new PackageModel(nextPackage.getValue());
-		for (PackageModel packageModel : receivedPackages) {
-			newReceivedPackages.add(packageModel);
+		//Este ACK confirma também o pacote que estava esperando
+		if (flows.delayedAckTimers[flowId] != null) {
+			simulator.cancelEvent(flows.delayedAckTimers[flowId]);
+			flows.delayedAckTimers[flowId] = null;
 		}
 		
-		returnPackage.setSackOption(newReceivedPackages);
+		//Blocos são montados na opção do receptor, a partir do bloco do pacote recebido, e copiados para a opção reaproveitada do evento do ACK
+		reorderBuffer().fillSackOption(flows.sackOption, event.getPackageValue());
 		
 		long initialTime = event.getTime();
-		simulator.shotEvent(this, initialTime + getServer().getGroup().getDelay(), event.leaveServerTime(), EventType.ACK, returnPackage);
+		simulator.shotEvent(this, getServer(), initialTime + getServer().getGroup().getDelay(), event.leaveServerTime(), EventType.ACK, reorderBuffer().getNextValue(), flows.sackOption);
+	}
+
+	/**
+	 * Retorna o buffer de reordenação deste receptor, guardado na tabela de fluxos
+	 */
+	private ReorderBuffer reorderBuffer() {
+		return flows.reorderBuffers[flowId];
 	}
 
 	/**
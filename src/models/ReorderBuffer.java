@@ -0,0 +1,225 @@
+package models;
+
+import Utils.SimulatorProperties;
+
+/**
+ *
+ * Buffer de reordenação de uma estação receptora, com os pacotes recebidos fora de ordem.
+ * <p>
+ * É um mapa de bits circular, com um bit por pacote, a partir do próximo pacote esperado (rcv_nxt).
+ * O bit de um pacote é o seu número de sequência em pacotes (identificador/MSS) módulo o tamanho do mapa.
+ * Ao receber o pacote esperado, o próximo buraco é encontrado percorrendo o mapa de 64 em 64 pacotes,
+ * através do <code>Long.numberOfTrailingZeros</code>. Assim, a recuperação de uma rajada de perdas custa O(janela/64).
+ * <p>
+ * Os blocos da opção SACK são montados diretamente das sequências de bits marcados.
+ * O mapa dobra de tamanho quando um pacote recebido não cabe nele.
+ *
+ * @see Receiver
+ */
+public class ReorderBuffer {
+
+	/**
+	 * Número de sequência, em pacotes, do próximo pacote esperado
+	 */
+	private long base;
+
+	/**
+	 * Número de sequência, em pacotes, seguinte ao último pacote recebido fora de ordem
+	 */
+	private long end;
+
+	/**
+	 * Mapa de bits dos pacotes recebidos fora de ordem
+	 */
+	private long[] words;
+
+	/**
+	 * Máscara para obter a palavra do mapa a partir do número de sequência dividido por 64
+	 */
+	private int wordMask;
+
+	/**
+	 * Cria um buffer vazio, esperando o pacote 0
+	 * @param initialCapacity número inicial de pacotes do mapa, arredondado para um múltiplo de 64 que seja potência de 2
+	 */
+	public ReorderBuffer(int initialCapacity) {
+		int wordCount = 1;
+		while (64*wordCount < initialCapacity) {
+			wordCount *= 2;
+		}
+		words = new long[wordCount];
+		wordMask = wordCount - 1;
+	}
+
+	/**
+	 * Retorna o identificador do próximo pacote esperado
+	 * @return rcv_nxt
+	 */
+	public long getNextValue() {
+		return base*SimulatorProperties.MSS;
+	}
+
+	/**
+	 * Indica se o pacote já foi recebido fora de ordem
+	 * @param value identificador do pacote
+	 * @return <code>true</code> se o pacote está no buffer
+	 */
+	public boolean contains(long value) {
+		long sequence = value/SimulatorProperties.MSS;
+		return sequence > base && sequence < end && (words[word(sequence)] & (1L << sequence)) != 0;
+	}
+
+	/**
+	 * Indica se não há pacotes recebidos fora de ordem
+	 * @return <code>true</code> se o buffer está vazio
+	 */
+	public boolean isEmpty() {
+		return end <= base;
+	}
+
+	/**
+	 * Guarda um pacote posterior ao próximo pacote esperado
+	 * @param value identificador do pacote
+	 */
+	public void add(long value) {
+		long sequence = value/SimulatorProperties.MSS;
+		while (sequence - base >= 64l*words.length) {
+			grow();
+		}
+		words[word(sequence)] |= 1L << sequence;
+		end = Math.max(end, sequence + 1);
+	}
+
+	/**
+	 * Recebe o próximo pacote esperado, e avança até o primeiro pacote ainda não recebido,
+	 * retirando do buffer os pacotes recebidos fora de ordem que passam a estar em ordem.
+	 */
+	public void advance() {
+		long next = nextClearBit(base + 1);
+		clear(base + 1, next);
+		base = next;
+		end = Math.max(end, base);
+	}
+
+	/**
+	 * Preenche a opção SACK com os blocos de pacotes recebidos fora de ordem, limitados a <code>SackOption.MAX_BLOCKS</code>.
+	 * <p>
+	 * Como na RFC 2018, o bloco do pacote que gerou o ACK sempre é informado. Os demais são os blocos mais altos,
+	 * que contêm os pacotes recebidos mais recentemente. Os blocos ficam na opção em ordem crescente.
+	 * 
+	 * @param sackOption opção SACK, cujos blocos são substituídos
+	 * @param value identificador do pacote que gerou o ACK
+	 */
+	public void fillSackOption(SackOption sackOption, long value) {
+		sackOption.clear();
+		long lastStart = -1;
+		if (contains(value)) {
+			lastStart = previousClearBit(value/SimulatorProperties.MSS) + 1;
+		}
+		
+		//Blocos mais baixos, fora o do último pacote, que não cabem na opção
+		int skipped = countBlocks() - SackOption.MAX_BLOCKS;
+		long sequence = nextSetBit(base + 1);
+		while (sequence < end) {
+			long blockEnd = nextClearBit(sequence);
+			if (sequence == lastStart || skipped-- <= 0) {
+				sackOption.addBlock(sequence*SimulatorProperties.MSS, blockEnd*SimulatorProperties.MSS);
+			}
+			sequence = nextSetBit(blockEnd);
+		}
+	}
+
+	/**
+	 * Retorna o número de blocos de pacotes recebidos fora de ordem
+	 */
+	private int countBlocks() {
+		int blocks = 0;
+		long sequence = nextSetBit(base + 1);
+		while (sequence < end) {
+			blocks++;
+			sequence = nextSetBit(nextClearBit(sequence));
+		}
+		return blocks;
+	}
+
+	/**
+	 * Retorna a palavra do mapa que guarda o bit do número de sequência
+	 */
+	private int word(long sequence) {
+		return (int) ((sequence >>> 6) & wordMask);
+	}
+
+	/**
+	 * Retorna o primeiro número de sequência a partir de <code>from</code> cujo pacote não está no buffer
+	 */
+	private long nextClearBit(long from) {
+		long sequence = from;
+		while (true) {
+			long clearBits = ~words[word(sequence)] & (-1L << sequence);
+			if (clearBits != 0) {
+				return (sequence & ~63L) + Long.numberOfTrailingZeros(clearBits);
+			}
+			sequence = (sequence & ~63L) + 64;
+		}
+	}
+
+	/**
+	 * Retorna o último número de sequência até <code>from</code> cujo pacote não está no buffer. O bit do próximo pacote esperado nunca está marcado.
+	 */
+	private long previousClearBit(long from) {
+		long sequence = from;
+		while (true) {
+			long clearBits = ~words[word(sequence)] & (-1L >>> (63 - (sequence & 63)));
+			if (clearBits != 0) {
+				return (sequence & ~63L) + 63 - Long.numberOfLeadingZeros(clearBits);
+			}
+			sequence = (sequence & ~63L) - 1;
+		}
+	}
+
+	/**
+	 * Retorna o primeiro número de sequência a partir de <code>from</code> cujo pacote está no buffer, ou <code>end</code> se não houver
+	 */
+	private long nextSetBit(long from) {
+		long sequence = from;
+		while (sequence < end) {
+			long setBits = words[word(sequence)] & (-1L << sequence);
+			if (setBits != 0) {
+				return Math.min(end, (sequence & ~63L) + Long.numberOfTrailingZeros(setBits));
+			}
+			sequence = (sequence & ~63L) + 64;
+		}
+		return end;
+	}
+
+	/**
+	 * Retira do buffer os pacotes de <code>from</code> até <code>to</code>, exclusivo
+	 */
+	private void clear(long from, long to) {
+		long sequence = from;
+		while (sequence < to) {
+			long wordEnd = Math.min(to, (sequence & ~63L) + 64);
+			long bits = -1L << sequence;
+			if (wordEnd - (sequence & ~63L) < 64) {
+				bits &= (1L << wordEnd) - 1;
+			}
+			words[word(sequence)] &= ~bits;
+			sequence = wordEnd;
+		}
+	}
+
+	/**
+	 * Dobra o tamanho do mapa, mantendo os pacotes recebidos
+	 */
+	private void grow() {
+		long[] oldWords = words;
+		int oldWordMask = wordMask;
+		words = new long[2*oldWords.length];
+		wordMask = words.length - 1;
+		for (long sequence = base + 1; sequence < end; sequence++) {
+			if ((oldWords[(int) ((sequence >>> 6) & oldWordMask)] & (1L << sequence)) != 0) {
+				words[word(sequence)] |= 1L << sequence;
+			}
+		}
+	}
+}
@@ -1,10 +1,9 @@
 package models;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Random;
 
 import models.interfaces.Listener;
+import Controller.InvariantChecker;
 import Controller.Simulator;
 import Enum.EventType;
 import Enum.RouterType;
@@ -21,19 +20,19 @@ import Utils.SimulatorProperties;
 public class Router implements Listener {
 
 	/**
-	 * Lista que representa a fila de espera.
+	 * Fila de espera, com capacidade igual ao tamanho do buffer.
 	 */
-	private List<Event> eventBuffer;
+	private RouterBuffer eventBuffer;
 
 	/** 
 	 * Tamanho do buffer em pacotes 
 	 */
-	private Integer bufferSize;
+	private int bufferSize;
 	
 	/** 
 	 * Taxa com que a fila é esvaziada em bytes 
 	 */
-	private Long broadcastRate;
+	private long broadcastRate;
 
 	/**
 	 * Política de fila que está sendo usada.
@@ -43,7 +42,7 @@ public class Router implements Listener {
 	/**
 	 * Flag para indicar se o roteador está em serviço.
 	 */
-	private Boolean onService;
+	private boolean onService;
 	
 	/**
 	 * Referencia para instancia única do simulator
@@ -53,37 +52,37 @@ public class Router implements Listener {
 	/**
 	 * Armazena o tempo da última vez que entregou um pacote ao receptor
 	 */
-	private Long lastTimeDelivered;
+	private long lastTimeDelivered;
 	
 	/**
 	 * Valor de wq usado pela política RED.
 	 */
-	private Float wq;
+	private float wq;
 	
 	/**
 	 * Valor de minth usado pela política RED.
 	 */
-	private Integer minth;
+	private int minth;
 	
 	/**
 	 * Valor de maxth usado pela política RED.
 	 */
-	private Integer maxth;
+	private int maxth;
 	
 	/**
 	 * Valor de maxp usado pela política RED.
 	 */
-	private Float maxp;
+	private float maxp;
 	
 	/**
 	 * Ocupação média da fila, usado somente pela política RED.
 	 */
-	private Float avg;
+	private float avg;
 	
 	/**
 	 * Representa o número de pacotes não descartados desde o último descarte, utilizado pela política RED.
 	 */
-	private Integer count; 
+	private int count; 
 	
 	/**
 	 * Gerador de número aleatórios.
@@ -93,7 +92,7 @@ public class Router implements Listener {
 	/**
 	 * Armazena o tempo em que se iniciou o último período ocioso.
 	 */
-	private Long lastBusyPeriodTime;
+	private long lastBusyPeriodTime;
 
 	/**
 	 * Constrói um roteador com a taxa fornecida.
@@ -103,29 +102,29 @@ public class Router implements Listener {
 	 * @param type tipo de politica de descarte
 	 * @param bufferSize tamanho do buffer
 	 */
-	public Router(Integer bufferSize, Long broadcastRate, RouterType type) {
+	public Router(int bufferSize, long broadcastRate, RouterType type) {
 		super();
 		this.bufferSize = bufferSize;
 		this.broadcastRate = broadcastRate;
 		this.type = type;
 		onService = false;
 
-		eventBuffer = new ArrayList<Event>();
+		eventBuffer = new RouterBuffer(bufferSize);
 
 		simulator = Simulator.getInstance();
 
 		simulator.registerListener(this, EventType.PACKAGE_SENT);
 		simulator.registerListener(this, EventType.PACKAGE_DELIVERED);
-		lastTimeDelivered = 0l;
+		lastTimeDelivered = 0;
 		
-		rand = new Random();
+		rand = new Random(simulator.newSeed());
 		wq = 0.002f;
 		minth = 5;
 		maxth = 15;
 		maxp = 0.02f;
 		avg = 0f;
 		count = 0; 
-		lastBusyPeriodTime =  0l;
+		lastBusyPeriodTime = 0;
 	}
 
 	/**
@@ -140,79 +139,166 @@ public class Router implements Listener {
 	public void Listen(Event event) {
 		switch (event.getType()) {
 		case PACKAGE_SENT:
-			if (type.equals(RouterType.FIFO)) {
-				acceptPackage(event);
-			} else if (type.equals(RouterType.RED)) {
-				
-				if (onService)
-					avg = (1 - wq)*avg + wq*eventBuffer.size(); 
-				else
-					avg = (float) (Math.pow((1 - wq), event.getTime() - lastBusyPeriodTime) * avg);
-				
-				if (eventBuffer.size() >= bufferSize || avg > maxth) {
-					// pacote é perdido
-					count = 0;
-				}else if (avg < minth) {
-					acceptPackage(event);
-				} else {
-					Float pb = maxp*(avg - minth) / (maxth - minth);
-					Float pa = pb / (1 - count*pb);
-					
-					
-					if (rand.nextFloat() < pa) {
-						acceptPackage(event);
-						count++;
-					} else {
-						// pacote é perdido
-						count = 0;
-					}
-				}
-				
+			if (event.getPackageCount() > 1) {
+				acceptGust(event);
+			} else if (admit(event.getTime())) {
+				//A política de descarte decide se o pacote é aceito; a entrada na fila é a mesma para todas as políticas
+				acceptPackage(event.getTime(), getFlowId(event), event.getPackageValue(), event.leaveServerTime());
 			}
 			break;
 		case PACKAGE_DELIVERED:
-			if (eventBuffer.size() == 0) {
+			if (eventBuffer.isEmpty()) {
 				onService = false;
 				lastBusyPeriodTime = event.getTime();
 			} else {
-				deliverPackage(eventBuffer.remove(0));//Já que pacote acabou de ser servido, inicia serviço do outro.
+				//Já que pacote acabou de ser servido, inicia serviço do primeiro da fila.
+				deliverPackage(event.getTime(), eventBuffer.getFlowId(), eventBuffer.getValue(), eventBuffer.getLeaveServerTime());
+				eventBuffer.remove();
 			}
 			break;
 		default:
 			break;
 		}
+		
+		if (InvariantChecker.ENABLED) {
+			if (eventBuffer.size() > bufferSize) {
+				InvariantChecker.fail("buffer do roteador com mais de " + bufferSize + " pacotes");
+			}
+			if (!onService && !eventBuffer.isEmpty()) {
+				InvariantChecker.fail("roteador ocioso com pacotes no buffer");
+			}
+		}
+	}
+
+	/**
+	 * Aplica a política de descarte a um pacote que acabou de chegar ao roteador.
+	 * <p>
+	 * Na política FIFO, todo pacote é aceito, e só é descartado no <code>acceptPackage()</code> se a fila estiver cheia.
+	 * Na política RED, a ocupação média da fila é atualizada, e o pacote é descartado com uma probabilidade que cresce com ela.
+	 * 
+	 * @param time tempo de chegada do pacote
+	 * @return <code>true</code> se o pacote foi aceito pela política
+	 */
+	private boolean admit(long time) {
+		if (type != RouterType.RED) {
+			return true;
+		}
+		
+		if (onService)
+			avg = (1 - wq)*avg + wq*eventBuffer.size(); 
+		else
+			avg = (float) (Math.pow((1 - wq), time - lastBusyPeriodTime) * avg);
+		
+		if (eventBuffer.isFull() || avg > maxth) {
+			// pacote é perdido
+			count = 0;
+			return false;
+		} else if (avg < minth) {
+			return true;
+		} else {
+			float pb = maxp*(avg - minth) / (maxth - minth);
+			float pa = pb / (1 - count*pb);
+			
+			if (rand.nextFloat() < pa) {
+				count++;
+				return true;
+			} else {
+				// pacote é perdido
+				count = 0;
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Recebe os pacotes de uma rajada do tráfego de fundo, que chegam juntos ao roteador, sem passar cada um pelo simulador.
+	 * <p>
+	 * Na política FIFO, se o roteador estiver ocioso o primeiro pacote é atendido, e os seguintes ocupam o buffer até enchê-lo.
+	 * Na política RED, a política de descarte é aplicada a cada pacote, na ordem da rajada.
+	 * 
+	 * @param event evento com a rajada
+	 */
+	private void acceptGust(Event event) {
+		int flowId = getFlowId(event);
+		long value = event.getPackageValue();
+		int count = event.getPackageCount();
+		
+		if (type != RouterType.RED) {
+			if (!onService) {
+				acceptPackage(event.getTime(), flowId, value, event.leaveServerTime());
+				value += SimulatorProperties.MSS;
+				count--;
+			}
+			//Pacotes que não cabem no buffer são descartados
+			count = Math.min(count, eventBuffer.remainingCapacity());
+			for (int i = 0; i < count; i++) {
+				eventBuffer.offer(flowId, value, event.leaveServerTime());
+				value += SimulatorProperties.MSS;
+			}
+		} else {
+			for (int i = 0; i < count; i++) {
+				if (admit(event.getTime())) {
+					acceptPackage(event.getTime(), flowId, value, event.leaveServerTime());
+				}
+				value += SimulatorProperties.MSS;
+			}
+		}
 	}
 
 	/**
 	 * Recebe o pacote ao chegar na fila, caso não tenha que ser descartado devido à política de descarte.
 	 * <p>
-	 * Se houverem pacotes na fila, coloca o novo evento na fila, senão, inicia o atendimento imediatamente, chamando o método deliverPackage()
+	 * Se o roteador estiver em serviço, coloca o pacote na fila, senão, inicia o atendimento imediatamente, chamando o método deliverPackage()
 	 * 
-	 * @param event evento com pacote que acabou de chegar na fila
+	 * @param time tempo de chegada do pacote
+	 * @param flowId fluxo que enviou o pacote, ou -1 para o tráfego de fundo
+	 * @param value identificador do pacote
+	 * @param leaveServerTime tempo em que o pacote deixou o servidor
 	 */
-	private void acceptPackage(Event event) {
+	private void acceptPackage(long time, int flowId, long value, long leaveServerTime) {
 		if(onService) {
-			if (eventBuffer.size() < bufferSize) {
-				eventBuffer.add(event);	//Caso o buffer esteja cheio, o pacote é descartado.	
-			}
+			//Caso o buffer esteja cheio, o pacote é descartado.
+			eventBuffer.offer(flowId, value, leaveServerTime);
 		} else {
 			//Caso o buffer esteja vazio, inicia o atendimento imediatamente.
-			deliverPackage(event);
+			deliverPackage(time, flowId, value, leaveServerTime);
 		}
 	}
 
 	/**
-	 * Dispara evento de entrega do pacote ao receptor para acontecer após o tempo de serviço
+	 * Retorna o fluxo que enviou o pacote de um evento. Pacotes que não vêm de um servidor são do tráfego de fundo
 	 * @param event
+	 * @return identificador do fluxo, ou -1 para o tráfego de fundo
 	 */
-	private void deliverPackage(Event event) {
-		Long initialTime = Math.max(lastTimeDelivered, event.getTime());
+	private static int getFlowId(Event event) {
+		return event.getSender() instanceof Server ? ((Server) event.getSender()).getFlowId() : -1;
+	}
+
+	/**
+	 * Dispara evento de entrega do pacote ao receptor para acontecer após o tempo de serviço.
+	 * <p>
+	 * O evento é endereçado ao receptor do servidor que enviou o pacote. Pacotes do tráfego de fundo não têm receptor.
+	 * @param time tempo atual
+	 * @param flowId fluxo que enviou o pacote, ou -1 para o tráfego de fundo
+	 * @param value identificador do pacote
+	 * @param leaveServerTime tempo em que o pacote deixou o servidor
+	 */
+	private void deliverPackage(long time, int flowId, long value, long leaveServerTime) {
+		long initialTime = Math.max(lastTimeDelivered, time);
 		
-		PackageModel packageModel = event.getPackageModel();
-		Long serviceTime = 1000l*1000000l*SimulatorProperties.MSS/broadcastRate;  
+		long serviceTime = 1000l*1000000l*SimulatorProperties.MSS/broadcastRate;  
 		
 		onService = true;
 		lastTimeDelivered = initialTime+serviceTime;
-		simulator.shotEvent(event.getSender(), lastTimeDelivered, event.leaveServerTime(), EventType.PACKAGE_DELIVERED, new PackageModel(packageModel.getValue()));
+		Object sender;
+		Receiver receiver = null;
+		if (flowId >= 0) {
+			Server server = simulator.getServer(flowId);
+			sender = server;
+			receiver = server.getReceiver();
+		} else {
+			sender = simulator.getBackgroundTraffic();
+		}
+		simulator.shotEvent(sender, receiver, lastTimeDelivered, leaveServerTime, EventType.PACKAGE_DELIVERED, value);
 	}
 }
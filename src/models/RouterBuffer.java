@@ -0,0 +1,136 @@
+package models;
+
+/**
+ *
+ * Fila de espera do roteador, com capacidade fixa.
+ * <p>
+ * É um buffer circular que guarda, para cada pacote na fila, apenas o fluxo que o enviou, o identificador do pacote
+ * e o tempo em que ele deixou o servidor, em vetores de tipos primitivos. Colocar e retirar um pacote custa O(1) e não aloca memória.
+ *
+ * @see Router
+ */
+public class RouterBuffer {
+
+	/**
+	 * Fluxo TCP que enviou cada pacote, ou -1 para o tráfego de fundo
+	 */
+	private final int[] flowIds;
+
+	/**
+	 * Identificador de cada pacote
+	 */
+	private final long[] values;
+
+	/**
+	 * Tempo em que cada pacote deixou o servidor
+	 */
+	private final long[] leaveServerTimes;
+
+	/**
+	 * Posição do primeiro pacote da fila
+	 */
+	private int head;
+
+	/**
+	 * Número de pacotes na fila
+	 */
+	private int size;
+
+	/**
+	 * @param capacity número máximo de pacotes na fila
+	 */
+	public RouterBuffer(int capacity) {
+		flowIds = new int[capacity];
+		values = new long[capacity];
+		leaveServerTimes = new long[capacity];
+	}
+
+	/**
+	 * Coloca um pacote no fim da fila, se houver espaço
+	 * @param flowId fluxo que enviou o pacote, ou -1 para o tráfego de fundo
+	 * @param value identificador do pacote
+	 * @param leaveServerTime tempo em que o pacote deixou o servidor
+	 * @return <code>false</code> se a fila estiver cheia, e o pacote foi descartado
+	 */
+	public boolean offer(int flowId, long value, long leaveServerTime) {
+		if (size == flowIds.length) {
+			return false;
+		}
+		int position = head + size;
+		if (position >= flowIds.length) {
+			position -= flowIds.length;
+		}
+		flowIds[position] = flowId;
+		values[position] = value;
+		leaveServerTimes[position] = leaveServerTime;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Retira o primeiro pacote da fila. Seus dados devem ser lidos antes, através de <code>getFlowId()</code>, <code>getValue()</code> e <code>getLeaveServerTime()</code>.
+	 */
+	public void remove() {
+		head++;
+		if (head == flowIds.length) {
+			head = 0;
+		}
+		size--;
+	}
+
+	/**
+	 * Retorna o fluxo que enviou o primeiro pacote da fila
+	 * @return identificador do fluxo, ou -1 para o tráfego de fundo
+	 */
+	public int getFlowId() {
+		return flowIds[head];
+	}
+
+	/**
+	 * Retorna o identificador do primeiro pacote da fila
+	 * @return identificador do pacote
+	 */
+	public long getValue() {
+		return values[head];
+	}
+
+	/**
+	 * Retorna o tempo em que o primeiro pacote da fila deixou o servidor
+	 * @return leaveServerTime
+	 */
+	public long getLeaveServerTime() {
+		return leaveServerTimes[head];
+	}
+
+	/**
+	 * Retorna o número de pacotes na fila
+	 * @return size
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Indica se a fila está vazia
+	 * @return <code>true</code> se não há pacotes na fila
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Retorna o número de pacotes que ainda cabem na fila
+	 * @return espaço livre
+	 */
+	public int remainingCapacity() {
+		return flowIds.length - size;
+	}
+
+	/**
+	 * Indica se a fila está cheia
+	 * @return <code>true</code> se um novo pacote seria descartado
+	 */
+	public boolean isFull() {
+		return size == flowIds.length;
+	}
+}
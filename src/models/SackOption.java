@@ -0,0 +1,134 @@
+package models;
+
+import Utils.SimulatorProperties;
+
+/**
+ * 
+ * Opção SACK de um ACK, com os pacotes que o receptor recebeu fora de ordem.
+ * <p>
+ * Assim como os blocos SACK do TCP, os pacotes são representados por intervalos contíguos [início, fim) de identificadores de pacotes,
+ * em ordem crescente. O tamanho da opção e o custo das consultas dependem do número de blocos, e não do número de pacotes recebidos fora de ordem.
+ * <p>
+ * Como no TCP, a opção leva no máximo <code>MAX_BLOCKS</code> blocos (RFC 2018): os pacotes dos blocos que ficam de fora
+ * já foram informados por ACKs anteriores, e continuam marcados no placar do servidor.
+ * <p>
+ * A opção de um ACK pertence ao evento do ACK e é reaproveitada junto com ele pelo <code>EventPool</code>, 
+ * então não deve ser guardada depois que o ACK for tratado. Só é alterada dentro do pacote <code>models</code>.
+ * 
+ * @see Event#getSackOption()
+ */
+public class SackOption {
+	
+	/**
+	 * Opção SACK sem blocos, dos eventos que não são ACK
+	 */
+	public static final SackOption EMPTY = new SackOption();
+	
+	/**
+	 * Número máximo de blocos de uma opção, o que cabe no espaço de opções do cabeçalho TCP sem a opção de timestamps
+	 */
+	public static final int MAX_BLOCKS = 4;
+	
+	/**
+	 * Blocos da opção: o início do bloco i fica na posição 2i, e o fim na posição 2i+1
+	 */
+	private long[] blocks;
+	
+	/**
+	 * Número de blocos
+	 */
+	private int blockCount;
+	
+	/**
+	 * Número de pacotes cobertos pelos blocos
+	 */
+	private int packages;
+
+	/**
+	 * Cria uma opção SACK sem blocos
+	 */
+	SackOption() {
+		blocks = new long[2*MAX_BLOCKS];
+	}
+
+	/**
+	 * Retira todos os blocos
+	 */
+	void clear() {
+		blockCount = 0;
+		packages = 0;
+	}
+
+	/**
+	 * Acrescenta um bloco depois do último
+	 * @param start identificador do primeiro pacote do bloco
+	 * @param end identificador seguinte ao último pacote do bloco, exclusivo
+	 * @throws IllegalStateException se a opção já tiver <code>MAX_BLOCKS</code> blocos
+	 */
+	void addBlock(long start, long end) {
+		if (blockCount == MAX_BLOCKS) {
+			throw new IllegalStateException("Opção SACK com mais de " + MAX_BLOCKS + " blocos");
+		}
+		blocks[2*blockCount] = start;
+		blocks[2*blockCount + 1] = end;
+		blockCount++;
+		packages += (int) ((end - start)/SimulatorProperties.MSS);
+	}
+
+	/**
+	 * Substitui os blocos pelos de outra opção
+	 * @param other opção copiada
+	 */
+	void copyFrom(SackOption other) {
+		clear();
+		for (int i = 0; i < other.blockCount; i++) {
+			addBlock(other.getStart(i), other.getEnd(i));
+		}
+	}
+
+	/**
+	 * Retorna o número de blocos
+	 * @return número de blocos
+	 */
+	public int getBlockCount() {
+		return blockCount;
+	}
+	
+	/**
+	 * Retorna o identificador do primeiro pacote do bloco
+	 * @param block índice do bloco
+	 * @return início do bloco
+	 */
+	public long getStart(int block) {
+		return blocks[2*block];
+	}
+	
+	/**
+	 * Retorna o identificador seguinte ao último pacote do bloco
+	 * @param block índice do bloco
+	 * @return fim do bloco, exclusivo
+	 */
+	public long getEnd(int block) {
+		return blocks[2*block + 1];
+	}
+	
+	/**
+	 * Retorna o número de pacotes cobertos pelos blocos
+	 * @return packages
+	 */
+	public int size() {
+		return packages;
+	}
+	
+	/**
+	 * Representação dos blocos da opção, no formato [início-fim)
+	 */
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 2*blockCount; i += 2) {
+			text.append('[').append(blocks[i]).append('-').append(blocks[i + 1]).append(')');
+		}
+		return text.toString();
+	}
+}
@@ -0,0 +1,528 @@
+package models;
+
+import java.util.Arrays;
+
+import Controller.Simulator;
+import Utils.SimulatorProperties;
+
+/**
+ *
+ * Placar dos pacotes em trânsito de uma sessão TCP, usado pelo <code>Server</code>.
+ * <p>
+ * É um buffer circular com uma posição por pacote, a partir do primeiro pacote ainda não confirmado (snd_una).
+ * A posição de um pacote é (identificador - snd_una)/MSS, de forma que consultar ou marcar um pacote custa O(1).
+ * Cada posição guarda se o pacote foi enviado, recebido fora de ordem pelo receptor (sack) ou dado como perdido no fast retransmit,
+ * junto com o último evento de envio ao roteador e o timeout do pacote.
+ * <p>
+ * Os pacotes recebidos fora de ordem também são guardados como intervalos de números de sequência. Um bloco SACK só percorre
+ * os trechos que ainda não estão nesses intervalos, de forma que cada pacote é marcado uma única vez, e os blocos repetidos
+ * pelos ACKs seguintes custam apenas a comparação com os intervalos.
+ * <p>
+ * Quando chega um ACK novo, as posições dos pacotes confirmados são liberadas, cancelando seus timeouts e devolvendo seus eventos de envio.
+ * O buffer dobra de tamanho quando a janela não cabe nele.
+ *
+ * @see Server
+ */
+public class Scoreboard {
+
+	/**
+	 * Pacote enviado e ainda não reenviado, nem dado como perdido por timeout
+	 */
+	private static final byte SENT = 1;
+
+	/**
+	 * Pacote recebido fora de ordem pelo receptor, segundo a opção SACK dos ACKs
+	 */
+	private static final byte SACKED = 2;
+
+	/**
+	 * Pacote perdido, esperando ser recuperado no fast retransmit
+	 */
+	private static final byte LOST = 4;
+
+	/**
+	 * Número de sequência, em pacotes, do primeiro pacote não confirmado
+	 */
+	private long base;
+
+	/**
+	 * Número de sequência, em pacotes, seguinte ao último pacote guardado no placar
+	 */
+	private long end;
+
+	/**
+	 * Máscara para obter a posição no buffer a partir do número de sequência. O tamanho do buffer é sempre uma potência de 2
+	 */
+	private int mask;
+
+	private byte[] flags;
+	private Event[] sentEvents;
+	private Event[] timeouts;
+	private long[] timeoutTimes;
+
+	/**
+	 * Número de pacotes marcados como enviados
+	 */
+	private int sentCount;
+
+	/**
+	 * Número de pacotes marcados como perdidos
+	 */
+	private int lostCount;
+
+	/**
+	 * Número de pacotes marcados como recebidos fora de ordem
+	 */
+	private int sackedCount;
+
+	/**
+	 * Intervalos [início, fim), em números de sequência, dos pacotes marcados como recebidos fora de ordem, 
+	 * em ordem crescente e sem sobreposição: o início do intervalo i fica na posição 2i, e o fim na posição 2i+1
+	 */
+	private long[] sackedRanges;
+	private int sackedRangeCount;
+
+	/**
+	 * Número de timeouts agendados
+	 */
+	private int timeoutCount;
+
+	/**
+	 * Referência para a instância única do Simulator
+	 */
+	private Simulator simulator;
+
+	/**
+	 * Cria um placar vazio, a partir do pacote 0
+	 * @param initialCapacity número inicial de posições, arredondado para uma potência de 2
+	 */
+	public Scoreboard(int initialCapacity) {
+		int capacity = Integer.highestOneBit(Math.max(2, initialCapacity - 1) << 1);
+		mask = capacity - 1;
+		flags = new byte[capacity];
+		sentEvents = new Event[capacity];
+		timeouts = new Event[capacity];
+		timeoutTimes = new long[capacity];
+		sackedRanges = new long[2*SackOption.MAX_BLOCKS];
+
+		simulator = Simulator.getInstance();
+	}
+
+	/**
+	 * Retorna o identificador do primeiro pacote não confirmado
+	 * @return primeiro pacote da janela
+	 */
+	public long getFirstValue() {
+		return base*SimulatorProperties.MSS;
+	}
+
+	/**
+	 * Retorna o identificador seguinte ao último pacote guardado no placar.
+	 * Os pacotes do placar podem ser percorridos de <code>getFirstValue()</code> até este valor, de MSS em MSS.
+	 * @return fim da janela, exclusivo
+	 */
+	public long getEndValue() {
+		return end*SimulatorProperties.MSS;
+	}
+
+	/**
+	 * Indica se o pacote está marcado como enviado
+	 * @param value
+	 * @return <code>true</code> se o pacote foi enviado e não foi desmarcado
+	 */
+	public boolean isSent(long value) {
+		return hasFlag(value, SENT);
+	}
+
+	/**
+	 * Marca o pacote como enviado
+	 * @param value
+	 */
+	public void setSent(long value) {
+		int slot = slot(value);
+		if ((flags[slot] & SENT) == 0) {
+			flags[slot] |= SENT;
+			sentCount++;
+		}
+	}
+
+	/**
+	 * Desmarca o pacote como enviado, por ter sido perdido ou por ir ser reenviado
+	 * @param value
+	 */
+	public void clearSent(long value) {
+		if (isSent(value)) {
+			flags[existingSlot(value)] &= ~SENT;
+			sentCount--;
+		}
+	}
+
+	/**
+	 * Retorna o número de pacotes marcados como enviados
+	 * @return sentCount
+	 */
+	public int getSentCount() {
+		return sentCount;
+	}
+
+	/**
+	 * Indica se o receptor recebeu o pacote fora de ordem
+	 * @param value
+	 * @return <code>true</code> se algum ACK informou o pacote na opção SACK
+	 */
+	public boolean isSacked(long value) {
+		return hasFlag(value, SACKED);
+	}
+
+	/**
+	 * Marca os pacotes dos blocos da opção SACK como recebidos, cancelando seus timeouts.
+	 * <p>
+	 * Para cada bloco, percorre apenas as posições dentro da janela que ainda não estavam marcadas, e junta o bloco aos intervalos marcados.
+	 * @param sackOption
+	 */
+	public void markSacked(SackOption sackOption) {
+		for (int i = 0; i < sackOption.getBlockCount(); i++) {
+			long start = Math.max(sackOption.getStart(i)/SimulatorProperties.MSS, base);
+			long blockEnd = Math.min(sackOption.getEnd(i)/SimulatorProperties.MSS, end);
+			if (start >= blockEnd) {
+				continue;
+			}
+			
+			//Marca os trechos do bloco entre os intervalos já marcados
+			long sequence = start;
+			for (int range = 0; range < sackedRangeCount && sequence < blockEnd; range++) {
+				if (sackedRanges[2*range + 1] > sequence) {
+					markRange(sequence, Math.min(sackedRanges[2*range], blockEnd));
+					sequence = Math.max(sequence, sackedRanges[2*range + 1]);
+				}
+			}
+			markRange(sequence, blockEnd);
+			addSackedRange(start, blockEnd);
+		}
+	}
+
+	/**
+	 * Retorna o número de pacotes marcados como recebidos fora de ordem
+	 * @return sackedCount
+	 */
+	public int getSackedCount() {
+		return sackedCount;
+	}
+
+	/**
+	 * Indica se o pacote está marcado como perdido
+	 * @param value
+	 * @return <code>true</code> se o pacote espera recuperação no fast retransmit
+	 */
+	public boolean isLost(long value) {
+		return hasFlag(value, LOST);
+	}
+
+	/**
+	 * Marca o pacote como perdido
+	 * @param value
+	 */
+	public void setLost(long value) {
+		int slot = slot(value);
+		if ((flags[slot] & LOST) == 0) {
+			flags[slot] |= LOST;
+			lostCount++;
+		}
+	}
+
+	/**
+	 * Desmarca o pacote como perdido, por ter sido recuperado
+	 * @param value
+	 */
+	public void clearLost(long value) {
+		if (isLost(value)) {
+			flags[existingSlot(value)] &= ~LOST;
+			lostCount--;
+		}
+	}
+
+	/**
+	 * Desmarca como perdidos os pacotes que o receptor recebeu fora de ordem
+	 */
+	public void clearSackedLost() {
+		for (long sequence = base; sequence < end && lostCount > 0; sequence++) {
+			int slot = (int) (sequence & mask);
+			if ((flags[slot] & (LOST | SACKED)) == (LOST | SACKED)) {
+				flags[slot] &= ~LOST;
+				lostCount--;
+			}
+		}
+	}
+
+	/**
+	 * Desmarca todos os pacotes perdidos
+	 */
+	public void clearAllLost() {
+		for (long sequence = base; sequence < end && lostCount > 0; sequence++) {
+			int slot = (int) (sequence & mask);
+			if ((flags[slot] & LOST) != 0) {
+				flags[slot] &= ~LOST;
+				lostCount--;
+			}
+		}
+	}
+
+	/**
+	 * Retorna o número de pacotes marcados como perdidos
+	 * @return lostCount
+	 */
+	public int getLostCount() {
+		return lostCount;
+	}
+
+	/**
+	 * Retorna o último evento de envio ao roteador do pacote
+	 * @param value
+	 * @return evento de envio, ou <code>null</code> se o pacote não foi enviado
+	 */
+	public Event getSentEvent(long value) {
+		return isInWindow(value) ? sentEvents[existingSlot(value)] : null;
+	}
+
+	/**
+	 * Guarda o último evento de envio ao roteador do pacote, que deve ter sido retido. O evento anterior é devolvido ao simulador.
+	 * @param value
+	 * @param sentEvent
+	 */
+	public void setSentEvent(long value, Event sentEvent) {
+		int slot = slot(value);
+		if (sentEvents[slot] != null) {
+			simulator.releaseEvent(sentEvents[slot]);
+		}
+		sentEvents[slot] = sentEvent;
+	}
+
+	/**
+	 * Guarda o evento de timeout agendado para o pacote
+	 * @param value
+	 * @param timeout
+	 */
+	public void setTimeout(long value, Event timeout) {
+		int slot = slot(value);
+		if (timeouts[slot] == null) {
+			timeoutCount++;
+		}
+		timeouts[slot] = timeout;
+	}
+
+	/**
+	 * Cancela o timeout agendado para o pacote, se houver
+	 * @param value
+	 */
+	public void cancelTimeout(long value) {
+		Event timeout = removeTimeout(value);
+		if (timeout != null) {
+			simulator.cancelEvent(timeout);
+		}
+	}
+
+	/**
+	 * Esquece o timeout do pacote sem cancelá-lo, quando ele já aconteceu
+	 * @param value
+	 * @return timeout que estava guardado, ou <code>null</code>
+	 */
+	public Event removeTimeout(long value) {
+		if (!isInWindow(value)) {
+			return null;
+		}
+		int slot = existingSlot(value);
+		Event timeout = timeouts[slot];
+		if (timeout != null) {
+			timeouts[slot] = null;
+			timeoutCount--;
+		}
+		return timeout;
+	}
+
+	/**
+	 * Retorna o número de timeouts agendados
+	 * @return timeoutCount
+	 */
+	public int getTimeoutCount() {
+		return timeoutCount;
+	}
+
+	/**
+	 * Retorna o tempo de timeout calculado no último envio do pacote
+	 * @param value
+	 * @return tempo de timeout
+	 */
+	public long getTimeoutTime(long value) {
+		return timeoutTimes[existingSlot(value)];
+	}
+
+	/**
+	 * Guarda o tempo de timeout calculado no envio do pacote
+	 * @param value
+	 * @param timeoutTime
+	 */
+	public void setTimeoutTime(long value, long timeoutTime) {
+		timeoutTimes[slot(value)] = timeoutTime;
+	}
+
+	/**
+	 * Desloca o início da janela para o pacote confirmado pelo ACK, liberando as posições dos pacotes anteriores a ele.
+	 * <p>
+	 * Os timeouts dos pacotes liberados são cancelados, e seus eventos de envio devolvidos ao simulador.
+	 * @param ackValue próximo pacote esperado pelo receptor
+	 */
+	public void advance(long ackValue) {
+		long newBase = ackValue/SimulatorProperties.MSS;
+		for (long sequence = base; sequence < newBase && sequence < end; sequence++) {
+			int slot = (int) (sequence & mask);
+			if (timeouts[slot] != null) {
+				simulator.cancelEvent(timeouts[slot]);
+				timeouts[slot] = null;
+				timeoutCount--;
+			}
+			if (sentEvents[slot] != null) {
+				simulator.releaseEvent(sentEvents[slot]);
+				sentEvents[slot] = null;
+			}
+			if ((flags[slot] & SENT) != 0) {
+				sentCount--;
+			}
+			if ((flags[slot] & LOST) != 0) {
+				lostCount--;
+			}
+			if ((flags[slot] & SACKED) != 0) {
+				sackedCount--;
+			}
+			flags[slot] = 0;
+			timeoutTimes[slot] = 0;
+		}
+		if (newBase > base) {
+			dropSackedRanges(newBase);
+			base = newBase;
+			end = Math.max(end, base);
+		}
+	}
+
+	/**
+	 * Marca como recebidos os pacotes do trecho, que ainda não estavam marcados, cancelando seus timeouts
+	 * @param from primeiro número de sequência do trecho
+	 * @param to número de sequência seguinte ao último do trecho, exclusivo
+	 */
+	private void markRange(long from, long to) {
+		for (long sequence = from; sequence < to; sequence++) {
+			flags[(int) (sequence & mask)] |= SACKED;
+			sackedCount++;
+			cancelTimeout(sequence*SimulatorProperties.MSS);
+		}
+	}
+
+	/**
+	 * Junta um intervalo aos intervalos marcados, unindo-o aos que se sobrepõem ou encostam nele
+	 * @param start primeiro número de sequência do intervalo
+	 * @param rangeEnd número de sequência seguinte ao último do intervalo, exclusivo
+	 */
+	private void addSackedRange(long start, long rangeEnd) {
+		int first = 0;
+		while (first < sackedRangeCount && sackedRanges[2*first + 1] < start) {
+			first++;
+		}
+		int last = first;
+		while (last < sackedRangeCount && sackedRanges[2*last] <= rangeEnd) {
+			start = Math.min(start, sackedRanges[2*last]);
+			rangeEnd = Math.max(rangeEnd, sackedRanges[2*last + 1]);
+			last++;
+		}
+		
+		//Os intervalos de first a last são substituídos por um só
+		int newCount = sackedRangeCount - (last - first) + 1;
+		if (2*newCount > sackedRanges.length) {
+			sackedRanges = Arrays.copyOf(sackedRanges, 2*sackedRanges.length);
+		}
+		System.arraycopy(sackedRanges, 2*last, sackedRanges, 2*(first + 1), 2*(sackedRangeCount - last));
+		sackedRanges[2*first] = start;
+		sackedRanges[2*first + 1] = rangeEnd;
+		sackedRangeCount = newCount;
+	}
+
+	/**
+	 * Retira dos intervalos marcados os números de sequência anteriores ao novo início da janela
+	 * @param newBase novo início da janela
+	 */
+	private void dropSackedRanges(long newBase) {
+		int dropped = 0;
+		while (dropped < sackedRangeCount && sackedRanges[2*dropped + 1] <= newBase) {
+			dropped++;
+		}
+		if (dropped > 0) {
+			System.arraycopy(sackedRanges, 2*dropped, sackedRanges, 0, 2*(sackedRangeCount - dropped));
+			sackedRangeCount -= dropped;
+		}
+		if (sackedRangeCount > 0 && sackedRanges[0] < newBase) {
+			sackedRanges[0] = newBase;
+		}
+	}
+
+	/**
+	 * Indica se o pacote tem a marcação passada
+	 */
+	private boolean hasFlag(long value, byte flag) {
+		return isInWindow(value) && (flags[existingSlot(value)] & flag) != 0;
+	}
+
+	/**
+	 * Indica se o pacote está entre o início da janela e o último pacote guardado
+	 */
+	private boolean isInWindow(long value) {
+		long sequence = value/SimulatorProperties.MSS;
+		return sequence >= base && sequence < end;
+	}
+
+	/**
+	 * Retorna a posição de um pacote que já está no placar
+	 */
+	private int existingSlot(long value) {
+		return (int) ((value/SimulatorProperties.MSS) & mask);
+	}
+
+	/**
+	 * Retorna a posição do pacote, incluindo-o no placar se preciso, e dobrando o buffer se a janela não couber nele
+	 */
+	private int slot(long value) {
+		long sequence = value/SimulatorProperties.MSS;
+		if (sequence < base) {
+			throw new RuntimeException("Pacote " + value + " já confirmado");
+		}
+		while (sequence - base >= flags.length) {
+			grow();
+		}
+		if (sequence >= end) {
+			end = sequence + 1;
+		}
+		return (int) (sequence & mask);
+	}
+
+	/**
+	 * Dobra o tamanho do buffer, mantendo as posições da janela atual
+	 */
+	private void grow() {
+		int capacity = 2*flags.length;
+		int newMask = capacity - 1;
+		byte[] newFlags = new byte[capacity];
+		Event[] newSentEvents = new Event[capacity];
+		Event[] newTimeouts = new Event[capacity];
+		long[] newTimeoutTimes = new long[capacity];
+		for (long sequence = base; sequence < end; sequence++) {
+			int oldSlot = (int) (sequence & mask);
+			int newSlot = (int) (sequence & newMask);
+			newFlags[newSlot] = flags[oldSlot];
+			newSentEvents[newSlot] = sentEvents[oldSlot];
+			newTimeouts[newSlot] = timeouts[oldSlot];
+			newTimeoutTimes[newSlot] = timeoutTimes[oldSlot];
+		}
+		flags = newFlags;
+		sentEvents = newSentEvents;
+		timeouts = newTimeouts;
+		timeoutTimes = newTimeoutTimes;
+		mask = newMask;
+	}
+}
@@ -1,17 +1,19 @@
 package models;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Random;
-import java.util.Set;
-import java.util.TreeSet;
 
 import models.interfaces.Listener;
+import Controller.InvariantChecker;
 import Controller.Simulator;
+import Enum.AckMode;
 import Enum.EventType;
 import Enum.ServerStatus;
+import Enum.TimeoutMode;
+import Enum.TransmissionMode;
+import Enum.TraceLevel;
 import Utils.SimulatorProperties;
+import Utils.Tracer;
 import Utils.WriteToFile;
 
 /**
@@ -20,51 +22,22 @@ import Utils.WriteToFile;
  * <p>
  * Sua função é simular uma estação transmissora de uma sessão TCP aberta, tendo, portanto, seu par receptor.
  * O transmissor irá simular o envio de pacotes, obedecendo todo o protocolo TCP.
+ * <p>
+ * O estado da sessão fica na <code>FlowTable</code> da simulação: o servidor é uma visão sobre a linha do seu fluxo.
  *
+ * @see FlowTable
  */
 public class Server implements Listener {
 	/**
-	 * Variável que controla o id do próximo Server a ser criado
-	 */
-	private static int id = 1;
-
-	/**
-	 * Armazena a id do server.
-	 */	
-	private Integer myId;
-	
-	/**
-	 * Taxa com que um servidor envia pacotes para um roteador em bytes por segundo em bytes.
+	 * Identificador do fluxo TCP deste servidor, de 0 ao número de servidores da simulação menos 1
 	 */
-	private Long broadcastRate;
-	
-	/**
-	 * Tempo real de retorno do pacote ao servidor
-	 */
-	private Long rtt;
-
-	/**
-	 * Threshold com a qual o TCP está operando em bytes.
-	 */
-	private Double threshold;
-
-	/**
-	 * Janela móvel pela qual a estação transmissora TCP controla quais bytes podem ser transmitidos.
-	 * Esta janela inclui todos os bytes que em um dado momento podem estar em transmissão, pendente de recebimento de ACK.
-	 * ACK é um pacote enviado pelo RxTCP que indica qual o próximo byte esperado para recebimento em ordem.
-	 */
-	private Double cwnd;
+	private int flowId;
 	
 	/**
 	 * Estação TCP receptora que irá receber os pacotes transmitidos por esta estação transmissora.
 	 */	
 	private Receiver receiver;
 	
-	/**
-	 * Modo de transmissão do servidor, podendo ser Slow Start, Congestion Avoidance ou Fast Retransmit
-	 */
-	private ServerStatus status;
-	
 	/**
 	 * Grupo a qual pertence este servidor. 
 	 */
@@ -76,85 +49,51 @@ public class Server implements Listener {
 	private Simulator simulator;
 	
 	/**
-	 * Número de pacotes a serem enviados nesta janela
-	 */
-	private Integer numOfPackages;
-	
-	/**
-	 * Número de acks duplicados recebidos
-	 */
-	private Integer duplicatedAcks;
-
-	/**
-	 * Armazena o pacote do último ACK recebido.
-	 */	
-	private PackageModel lastAck;
-	
-	/**
-	 * Registra qual é o próximo pacote a ser enviado.
-	 */
-	private PackageModel nextPackageToSend;
-	
-	/**
-	 * Armazena os pacotes enviados que estão pendentes de recebimento de ACK.
-	 */	
-	private Set<PackageModel> sentPackages;
-	
-	/**
-	 * Conjunto dos pacotes que o receptor recebeu fora de ordem.
+	 * Tabela de estado dos fluxos, onde fica o estado da sessão TCP deste servidor: 
+	 * janela, threshold, modo de transmissão, estimativa do tempo de retorno, último ACK, próximo pacote, contadores, 
+	 * placar dos pacotes em trânsito e timer de retransmissão.
 	 */
-	private Set<PackageModel> receivedAckPackages;
+	private FlowTable flows;
 	
 	/**
-	 * Lista de pacotes a serem reenviados no fast retransmit
+	 * Número inicial de posições do placar de pacotes em trânsito. O placar cresce se a janela não couber nele.
 	 */
-	private Set<PackageModel> waitingPackages;
-
-	/**
-	 * Tempo esperado para se receber um ACK de um pacote enviado.
-	 * Recalculado a cada timeout.
-	 */	
-	private long expectedReturnTime;
-	
-	/**
-	 * Desvio padrão do tempo esperado para se receber um ACK de um pacote enviado.
-	 */
-	private long deviationReturnTime;
+	private static final int INITIAL_SCOREBOARD_CAPACITY = 8;
 
 	/**
 	 * Constrói uma estação TCP transmissora, que irá escutar os eventos do tipo 
-	 * <code>EventType.TIME_OUT</code> e <code>EventType.ACK</code>.
+	 * <code>EventType.TIME_OUT</code> e <code>EventType.ACK</code> endereçados a ela.
 	 * 
 	 * @param broadcastRate taxa com que o servidor envia seus pacotes em bytes por segundo.
 	 * @param group grupo a qual pertence o servidor.
 	 * @param cwnd tamanho da janela de transmissão em bytes
+	 * @param flowId identificador do fluxo TCP do servidor
 	 */	
-	public Server(Long cwnd, ServerGroup group, Long broadcastRate) {
+	public Server(long cwnd, ServerGroup group, long broadcastRate, int flowId) {
 		super();
-		this.cwnd = (double) cwnd;
+		this.flowId = flowId;
 		this.group = group;
-		this.broadcastRate = broadcastRate;
+		
+		simulator = Simulator.getInstance();
+		flows = simulator.getFlowTable();
+		flows.addFlow(flowId);
+		
+		flows.cwnd[flowId] = (double) cwnd;
+		flows.broadcastRate[flowId] = broadcastRate;
 		
 		//Inicializa threshold com valor padrão
-		threshold = 65535d;
+		flows.threshold[flowId] = 65535d;
 		//Servidor inicia transmissão no modo slow start
-		status = ServerStatus.SLOW_START;
+		flows.setStatus(flowId, ServerStatus.SLOW_START);
 		
-		myId = id++;
 		//número de pacotes a serem enviados inicia em 1
-		numOfPackages = 1;
-		
-		sentPackages = new TreeSet<PackageModel>();
-		receivedAckPackages = new TreeSet<PackageModel>();
-		waitingPackages = new TreeSet<PackageModel>();
+		flows.numOfPackages[flowId] = 1;
 		
-		expectedReturnTime = 4*group.getDelay();
-		rtt = expectedReturnTime;
-		deviationReturnTime = 0;
+		flows.expectedReturnTime[flowId] = 4*group.getDelay();
+		flows.rtt[flowId] = flows.expectedReturnTime[flowId];
+		flows.deviationReturnTime[flowId] = 0;
 		
-		simulator = Simulator.getInstance();
-		simulator.registerListener(this, EventType.TIME_OUT);
-		simulator.registerListener(this, EventType.ACK);
+		flows.scoreboards[flowId] = new Scoreboard(INITIAL_SCOREBOARD_CAPACITY);
 	}
 	/**
 	 * Seleciona a semente do rand, e envia o primeiro pacote num tempo aleatório
@@ -162,11 +101,14 @@ public class Server implements Listener {
 	public void startServer(Receiver receiver) {
 		this.receiver = receiver;
 		//Inicializado com primeiro pacote, com id 0
-		lastAck = new PackageModel(0);
+		flows.lastAck[flowId] = 0;
 		
-		Random rand = new Random(System.nanoTime());
+		Random rand = new Random(simulator.newSeed());
 		
-		sendPackage(rand.nextInt(1000)*1000000l, lastAck);
+		sendPackage(rand.nextInt(1000)*1000000l, flows.lastAck[flowId]);
+		if (InvariantChecker.ENABLED) {
+			checkInvariants();
+		}
 	}
 
 	/**
@@ -180,7 +122,9 @@ public class Server implements Listener {
 	 */
 	@Override
 	public void Listen(Event event) {
-		System.out.println(event);
+		if (Tracer.isEnabled(TraceLevel.DEBUG, flowId, event.getType())) {
+			Tracer.event(event);
+		}
 		switch (event.getType()) {
 		case ACK:
 			listenAck(event);			
@@ -192,49 +136,96 @@ public class Server implements Listener {
 			break;
 		}
 		
+		if (InvariantChecker.ENABLED) {
+			checkInvariants();
+		}
 	}
 
 	/**
 	 * Envia o pacote, através de um evento que será escutado pelo roteador. E também programa o timeout
 	 * <p>
-	 * Se ainda houver pacote para ser enviado, envia o próximo, chamando outra vez o sendPackage()
+	 * Se ainda houver pacote para ser enviado nesta janela, envia os próximos em seguida, cada um ao fim do tempo de serviço do anterior.
+	 * <p>
+	 * No modo <code>TransmissionMode.TRAIN</code>, os pacotes da janela são enviados em um único evento, como um trem de pacotes.
 	 * 
 	 * @param initialTime
-	 * @param packageModel
+	 * @param value identificador do pacote
+	 * @see PackageTrain
 	 */
-	private void sendPackage(Long initialTime, PackageModel packageModel) {
-		
-		//Cancela time out se houver, no caso de estar reenviando pacote.
-		cancelTimeout(packageModel);
-		
+	private void sendPackage(long initialTime, long value) {
 		//Calcula tempo de serviço através da taxa de transmissão
-		Long serviceTime = (long) (1000l*1000l*1000l*SimulatorProperties.MSS/broadcastRate);
-		//Tempo que pacote deve sair do servidor
-		Long finishedServiceTime = initialTime+serviceTime;
-		
-		//Dispara evento para ocorrer no tempo que sai do servidor + o tempo para chegar no roteador
-		simulator.shotEvent(this, finishedServiceTime+group.getDelay(), initialTime, EventType.PACKAGE_SENT, new PackageModel(packageModel.getValue()));
-		
-		//Calcula o timeout para este tempo de saída do servidor
-		Long timeoutTime = getTimeoutTime(finishedServiceTime);
-		//Dispara evento de timeout para o tempo calculado, e para um pacote de mesmo id(value) que pacote enviado
-		simulator.shotEvent(this, timeoutTime, initialTime, EventType.TIME_OUT, new PackageModel(packageModel.getValue()));
-		
-		if (sentPackages.contains(packageModel)) {
-			throw new RuntimeException("Enviando pacote já enviado");
-		} else {	
-			//Adiciona o pacote enviado à lista de pacotes enviados
-			sentPackages.add(packageModel);
-			verifyTimeOut();
-		}
+		long serviceTime = 1000l*1000l*1000l*SimulatorProperties.MSS/flows.broadcastRate[flowId];
 		
-		//Uma vez que acabou de enviar um pacote, decrementa o número de pacotes a enviar nesta janela
-		numOfPackages--;
+		Event trainEvent = null;
+		PackageTrain train = null;
 		
-		if (numOfPackages > 0) {
+		while (true) {
+			//Cancela time out se houver, no caso de estar reenviando pacote.
+			scoreboard().cancelTimeout(value);
+			
+			//Tempo que pacote deve sair do servidor
+			long finishedServiceTime = initialTime+serviceTime;
+			
+			//Dispara evento para ocorrer no tempo que sai do servidor + o tempo para chegar no roteador
+			Event sentEvent;
+			if (train != null) {
+				//Pacote segue no trem, chegando ao roteador um tempo de serviço depois do anterior
+				train.add(value, simulator.reserveSequence());
+				sentEvent = trainEvent;
+			} else {
+				sentEvent = simulator.shotEvent(this, finishedServiceTime+group.getDelay(), initialTime, EventType.PACKAGE_SENT, value);
+				if (SimulatorProperties.transmissionMode == TransmissionMode.TRAIN && flows.numOfPackages[flowId] > 1) {
+					trainEvent = sentEvent;
+					train = trainEvent.startTrain(serviceTime);
+					train.add(value, trainEvent.getSequence());
+				}
+			}
+			//Evento continua sendo consultado depois de chegar ao roteador
+			sentEvent.retain();
+			scoreboard().setSentEvent(value, sentEvent);
+			
+			//Calcula o timeout para este tempo de saída do servidor
+			long timeoutTime = getTimeoutTime(finishedServiceTime);
+			if (SimulatorProperties.timeoutMode == TimeoutMode.PER_FLOW) {
+				scoreboard().setTimeoutTime(value, timeoutTime);
+			} else if (!scoreboard().isSacked(value)) {
+				//Dispara evento de timeout para o tempo calculado, e para um pacote de mesmo id(value) que pacote enviado
+				Event timeoutEvent = simulator.shotEvent(this, this, timeoutTime, initialTime, EventType.TIME_OUT, value);
+				scoreboard().setTimeout(value, timeoutEvent);
+			}
+			
+			if (scoreboard().isSent(value)) {
+				throw new RuntimeException("Enviando pacote já enviado");
+			} else {	
+				//Marca o pacote como enviado no placar
+				scoreboard().setSent(value);
+				
+				if (SimulatorProperties.timeoutMode == TimeoutMode.PER_FLOW) {
+					if (flows.retransmissionTimers[flowId] == null || flows.retransmissionTimers[flowId].getPackageValue() == value) {
+						//Arma o timer da conexão se ele não estiver rodando, ou se o pacote coberto foi reenviado
+						if (flows.retransmissionTimers[flowId] != null) {
+							simulator.cancelEvent(flows.retransmissionTimers[flowId]);
+						}
+						rearmRetransmissionTimer(initialTime);
+					} else if (timeoutTime < flows.retransmissionTimers[flowId].getTime()) {
+						//Estimativa do tempo de retorno diminuiu: este pacote vence antes do pacote coberto
+						simulator.cancelEvent(flows.retransmissionTimers[flowId]);
+						flows.retransmissionTimers[flowId] = simulator.shotEvent(this, this, timeoutTime, initialTime, EventType.TIME_OUT, value);
+					}
+				}
+			}
+			
+			//Uma vez que acabou de enviar um pacote, decrementa o número de pacotes a enviar nesta janela
+			flows.numOfPackages[flowId]--;
+			
+			if (flows.numOfPackages[flowId] <= 0) {
+				break;
+			}
+			
+			//Próximo pacote começa a ser enviado quando este sai do servidor
 			getNextPackage();
-			//Chama sendPackage para enviar o próximo pacote
-			sendPackage(finishedServiceTime, nextPackageToSend);
+			value = flows.nextPackageToSend[flowId];
+			initialTime = finishedServiceTime;
 		}
 	}
 
@@ -243,8 +234,8 @@ public class Server implements Listener {
 	 * 
 	 * @param event evento do tipo <code>EventType.SENDING_PACKAGE</code>.
 	 */
-	private Long getTimeoutTime(Long finishedServiceTime) {
-		Long timeOutTime = expectedReturnTime + 4l*deviationReturnTime;
+	private long getTimeoutTime(long finishedServiceTime) {
+		long timeOutTime = flows.expectedReturnTime[flowId] + 4l*flows.deviationReturnTime[flowId];
 		
 		if (timeOutTime < 2*group.getDelay()) {
 			throw new RuntimeException("Tempo do timeout calculado errado");
@@ -269,27 +260,39 @@ public class Server implements Listener {
 	 * e entra-se em slow start.
 	 * <p>
 	 * O pacote então é reenviado pelo servidor.
+	 * <p>
+	 * No modo <code>TimeoutMode.PER_FLOW</code>, se o pacote coberto pelo timer já tiver sido confirmado, 
+	 * não houve timeout: o timer é apenas rearmado para o próximo pacote pendente a vencer.
 	 * 
-	 * @param event evento do tipo <code>EventType.TIME_OUT</code>, Caso o <code>Sender</code> do evento não tenha sido o próprio servidor, nada será feito.
+	 * @param event evento do tipo <code>EventType.TIME_OUT</code>, endereçado a este servidor.
 	 */
 	private void listenTimeOut(Event event) {
-		if (event.getSender().equals(this)) {						
-			threshold = Math.max(cwnd/2, SimulatorProperties.MSS);
-			
-			cwnd = (double) SimulatorProperties.MSS;
-			status = ServerStatus.SLOW_START;
-			duplicatedAcks = 0;
-			
-			//Substitui valor do próximo pacote a ser enviado pelo pacote do timeout
-			nextPackageToSend = event.getPackageModel();
-			
-			//Remove pacote que sofreu timeout da lista de pacotes enviados
-			sentPackages.remove(nextPackageToSend);
-			verifyTimeOut();
-			
-			//Inicia reenvio de pacote perdido
-			resendPackages(event.getTime());
-		}		
+		if (SimulatorProperties.timeoutMode == TimeoutMode.PER_FLOW) {
+			flows.retransmissionTimers[flowId] = null;
+			if (!isOutstanding(event.getPackageValue())) {
+				//Pacote coberto já foi confirmado: passa a cobrir o próximo pacote pendente
+				rearmRetransmissionTimer(event.getTime());
+				return;
+			}
+		} else {
+			//Timeout aconteceu, não precisa mais ser cancelado
+			scoreboard().removeTimeout(event.getPackageValue());
+		}
+		
+		//Substitui valor do próximo pacote a ser enviado pelo pacote do timeout
+		flows.nextPackageToSend[flowId] = event.getPackageValue();
+		
+		flows.threshold[flowId] = Math.max(flows.cwnd[flowId]/2, SimulatorProperties.MSS);
+		
+		flows.cwnd[flowId] = (double) SimulatorProperties.MSS;
+		flows.setStatus(flowId, ServerStatus.SLOW_START);
+		flows.duplicatedAcks[flowId] = 0;
+		
+		//Desmarca o pacote que sofreu timeout como enviado
+		scoreboard().clearSent(flows.nextPackageToSend[flowId]);
+		
+		//Inicia reenvio de pacote perdido
+		resendPackages(event.getTime());
 	}
 	
 	/**
@@ -298,41 +301,29 @@ public class Server implements Listener {
 	 * <p>
 	 * Este tipo de evento confirma o recebimento de um pacote por parte da estação receptora.
 	 * <p>
-	 * Neste método, o conjunto receivedAckPackages recebe os elementos da lista de pacotes recebidos contidos no sackOption
+	 * Neste método, os pacotes dos blocos contidos no sackOption são marcados no placar
 	 * 
-	 * @param event evento do tipo <code>EventType.ACK</code>, Caso o <code>Sender</code> do evento não tenha sido o <code>Receptor</code> conectado a este <code>Server</code>, nada será feito.
+	 * @param event evento do tipo <code>EventType.ACK</code>, endereçado a este servidor pelo <code>Receptor</code> conectado a ele.
 	 */
 	private void listenAck(Event event) {
-		if (event.getSender().equals(receiver)) {
-			
-			PackageModel eventPackage = event.getPackageModel();
-			//Pega na opção sack, os pacotes recebidos fora de ordem
-			receivedAckPackages = eventPackage.getSackOption();
-			
-			//Cancela todos os timeouts dos pacotes recebidos pelo receptor. Mesmo que a maioria já tenha sido cancelada no último recebimento, tenta cancelar todos
-			cancelReceivedAcksTimeOut();
-			
-			//Calcula variáveis do tempo de timeout
-			estimateTimeOutCalc(event);
-			
-			if (status.equals(ServerStatus.FAST_RETRANSMIT)) {
-				fastRetransmitAck(event);				
-			}else if (eventPackage.equals(lastAck)) {	//Se é um ack duplicado, ou seja, espera mesmo pacote que o último ack.	
-				//Providencia entrada no modo fast retransmit e inica recuperação
-				duplicatedAck(event);
-			}else {
-				//Trata recebimento de ack que indica pacote novo recebido na ordem
-				rigthAck(event, eventPackage);	
-			}
-		}
-	}
-
-	/**
-	 * Cancela o timeout de todos os pacotes ja recebidos pelo receptor, usando a lista receivedAckPackages
-	 */
-	private void cancelReceivedAcksTimeOut() {
-		for (PackageModel packageModel : receivedAckPackages) {
-			cancelTimeout(packageModel);
+		long eventPackage = event.getPackageValue();
+		//Pega na opção sack, os pacotes recebidos fora de ordem. A opção é do evento, e só é consultada durante o tratamento do ACK
+		SackOption receivedAckBlocks = event.getSackOption();
+		
+		//Marca os pacotes recebidos pelo receptor que ainda não estavam marcados, e cancela seus timeouts
+		scoreboard().markSacked(receivedAckBlocks);
+		
+		//Calcula variáveis do tempo de timeout
+		estimateTimeOutCalc(event);
+		
+		if (flows.getStatus(flowId) == ServerStatus.FAST_RETRANSMIT) {
+			fastRetransmitAck(event);				
+		}else if (eventPackage == flows.lastAck[flowId]) {	//Se é um ack duplicado, ou seja, espera mesmo pacote que o último ack.	
+			//Providencia entrada no modo fast retransmit e inica recuperação
+			duplicatedAck(event);
+		}else {
+			//Trata recebimento de ack que indica pacote novo recebido na ordem
+			rigthAck(event, eventPackage);	
 		}
 	}
 
@@ -350,26 +341,28 @@ public class Server implements Listener {
 	 */
 	private void fastRetransmitAck(Event event) {
 		
-		PackageModel eventPackage = event.getPackageModel();
+		long eventPackage = event.getPackageValue();
 		
-		if (eventPackage.equals(lastAck)) {//Se for ack duplicado, aumenta a janela
-			cwnd += SimulatorProperties.MSS;
-			numOfPackages = getNumOfPackages();				
+		if (eventPackage == flows.lastAck[flowId]) {//Se for ack duplicado, aumenta a janela
+			flows.cwnd[flowId] += SimulatorProperties.MSS;
+			flows.numOfPackages[flowId] = getNumOfPackages();				
 		} else {
 			//Se ack indica recebimento de pacote novo, remove ele da lista de pacotes a recuperar
-			Integer waitingPackageSize = waitingPackages.size();
-			waitingPackages.remove(lastAck);
-			waitingPackages.removeAll(receivedAckPackages);
+			int waitingPackageSize = scoreboard().getLostCount();
+			scoreboard().clearLost(flows.lastAck[flowId]);
+			scoreboard().clearSackedLost();
 						
 			//Se já tiver recebido ack de todos os pacotes perdidos, passa para congestion avoidance
-			if (waitingPackages.size() == 0) {
-				duplicatedAcks = 0;
-				status = ServerStatus.CONGESTION_AVOIDANCE;
-				System.out.println(ServerStatus.CONGESTION_AVOIDANCE);
-				cwnd = threshold;
+			if (scoreboard().getLostCount() == 0) {
+				flows.duplicatedAcks[flowId] = 0;
+				flows.setStatus(flowId, ServerStatus.CONGESTION_AVOIDANCE);
+				if (Tracer.isEnabled(TraceLevel.INFO, flowId, null)) {
+					Tracer.message(ServerStatus.CONGESTION_AVOIDANCE);
+				}
+				flows.cwnd[flowId] = flows.threshold[flowId];
 			} else {
-				cwnd += SimulatorProperties.MSS;
-				cwnd -= (waitingPackageSize - waitingPackages.size());
+				flows.cwnd[flowId] += SimulatorProperties.MSS;
+				flows.cwnd[flowId] -= (waitingPackageSize - scoreboard().getLostCount());
 			}
 			
 			//Desloca janela de transmissão
@@ -377,7 +370,7 @@ public class Server implements Listener {
 		}
 		
 		getNextPackage();
-		sendPackage(event.getTime(), nextPackageToSend);
+		sendPackage(event.getTime(), flows.nextPackageToSend[flowId]);
 	}
 
 	/**
@@ -397,10 +390,10 @@ public class Server implements Listener {
 	 * @param event evento do tipo ACK
 	 */
 	private void estimateTimeOutCalc(Event event) {
-		rtt = event.getTime() - event.leaveServerTime();					
-		Long differenceBetweenRealAndExpectation = rtt - expectedReturnTime;
-		deviationReturnTime += (long) (Math.abs(differenceBetweenRealAndExpectation) - deviationReturnTime)/4;
-		expectedReturnTime += (long) differenceBetweenRealAndExpectation/8;
+		flows.rtt[flowId] = event.getTime() - event.leaveServerTime();					
+		long differenceBetweenRealAndExpectation = flows.rtt[flowId] - flows.expectedReturnTime[flowId];
+		flows.deviationReturnTime[flowId] += (long) (Math.abs(differenceBetweenRealAndExpectation) - flows.deviationReturnTime[flowId])/4;
+		flows.expectedReturnTime[flowId] += (long) differenceBetweenRealAndExpectation/8;
 	}
 
 	/**
@@ -410,24 +403,33 @@ public class Server implements Listener {
 	 * @param event
 	 * @param eventPackage
 	 */
-	private void rigthAck(Event event, PackageModel eventPackage) {
-		duplicatedAcks = 0;
+	private void rigthAck(Event event, long eventPackage) {
+		flows.duplicatedAcks[flowId] = 0;
 		setStatus();
 				
-		if (this.status.equals(ServerStatus.SLOW_START)) {
-			cwnd += SimulatorProperties.MSS;
-		}else if(this.status.equals(ServerStatus.CONGESTION_AVOIDANCE)) {
-			Double numOfAcks = cwnd/SimulatorProperties.MSS;
+		//Com ACK atrasado, cada ACK confirma mais de um pacote: a janela cresce pelos bytes confirmados (RFC 3465)
+		long ackedPackages = 1;
+		if (SimulatorProperties.ackMode == AckMode.DELAYED) {
+			ackedPackages = (eventPackage - flows.lastAck[flowId])/SimulatorProperties.MSS;
+		}
+		
+		if (flows.getStatus(flowId) == ServerStatus.SLOW_START) {
+			//Limite de 2 MSS por ACK em slow start (L = 2 na RFC 3465)
+			flows.cwnd[flowId] += Math.min(ackedPackages, 2)*SimulatorProperties.MSS;
+		}else if(flows.getStatus(flowId) == ServerStatus.CONGESTION_AVOIDANCE) {
+			double numOfAcks = flows.cwnd[flowId]/SimulatorProperties.MSS;
 			if (numOfAcks == 0) {
-				System.out.println(numOfAcks);
+				if (Tracer.isEnabled(TraceLevel.INFO, flowId, null)) {
+					Tracer.message(numOfAcks);
+				}
 			}
-			cwnd += SimulatorProperties.MSS/numOfAcks;
+			flows.cwnd[flowId] += ackedPackages*SimulatorProperties.MSS/numOfAcks;
 		}		
 		walkWithWindow(event);
 						
 		getNextPackage();
 		
-		sendPackage(event.getTime(), nextPackageToSend);
+		sendPackage(event.getTime(), flows.nextPackageToSend[flowId]);
 	}
 
 	/**
@@ -435,24 +437,18 @@ public class Server implements Listener {
 	 * @param event
 	 */
 	private void walkWithWindow(Event event) {
-		cancelTimeout(lastAck);
+		//Pacotes anteriores ao ACK foram todos recebidos: libera suas posições no placar, cancelando os timeouts
+		scoreboard().advance(event.getPackageValue());
 		
-		lastAck = event.getPackageModel();
+		flows.lastAck[flowId] = event.getPackageValue();
 		
-		Set<PackageModel> removeSentPackages = new TreeSet<PackageModel>();
+		flows.numOfPackages[flowId] = getNumOfPackages();
 
-		for (PackageModel packageModel : sentPackages) {
-			if (packageModel.compareTo(lastAck) == -1) {
-				cancelTimeout(packageModel);
-				removeSentPackages.add(packageModel);
-			}
-		}
+		flows.nextPackageToSend[flowId] = flows.lastAck[flowId];
 		
-		sentPackages.removeAll(removeSentPackages);
-		verifyTimeOut();
-		numOfPackages = getNumOfPackages();
-
-		nextPackageToSend = lastAck;
+		if (SimulatorProperties.timeoutMode == TimeoutMode.PER_FLOW) {
+			restartRetransmissionTimer(event.getTime());
+		}
 	}
 
 	/**
@@ -462,20 +458,22 @@ public class Server implements Listener {
 	 * @param event
 	 */
 	private void duplicatedAck(Event event) {
-		duplicatedAcks++;
-		if (duplicatedAcks == 3) {
-			System.out.println(ServerStatus.FAST_RETRANSMIT);	
+		flows.duplicatedAcks[flowId]++;
+		if (flows.duplicatedAcks[flowId] == 3) {
+			if (Tracer.isEnabled(TraceLevel.INFO, flowId, null)) {
+				Tracer.message(ServerStatus.FAST_RETRANSMIT);
+			}
 			//Ao receber o terceiro ack duplicado, reinicia a contagem
-			duplicatedAcks = 0;
+			flows.duplicatedAcks[flowId] = 0;
 			//Diminui threshold pela metade
-			threshold = Math.max(cwnd/2, SimulatorProperties.MSS);
-			cwnd = threshold + 3*SimulatorProperties.MSS;
-			//Remove pacote do ack esperado da lista de pacotes enviados
-			removeSentPackage(lastAck);
+			flows.threshold[flowId] = Math.max(flows.cwnd[flowId]/2, SimulatorProperties.MSS);
+			flows.cwnd[flowId] = flows.threshold[flowId] + 3*SimulatorProperties.MSS;
+			//Desmarca o pacote do ack esperado como enviado
+			scoreboard().clearSent(flows.lastAck[flowId]);
 			//O pacote esperado pelo ack será o primeiro a ser reenviado
-			nextPackageToSend = lastAck;
+			flows.nextPackageToSend[flowId] = flows.lastAck[flowId];
 			//Muda o modo de transmissão desse servidor para fast retransmit
-			status = ServerStatus.FAST_RETRANSMIT;
+			flows.setStatus(flowId, ServerStatus.FAST_RETRANSMIT);
 			
 			//Inicia reenvido dos pacotes perdidos
 			resendPackages(event.getTime());			
@@ -497,135 +495,209 @@ public class Server implements Listener {
 	 * @param nextPackage pacote a ser reenviado.
 	 * @param time instante de tempo na simulação que o pacote será reenviado.
 	 */	
-	private void resendPackages(Long time) {
+	private void resendPackages(long time) {
 		
 		//Reinicia contagem dos acks duplicados
-		duplicatedAcks = 0;
-		//Reinicia lista de pacotes esperando ack
-		waitingPackages.clear();
+		flows.duplicatedAcks[flowId] = 0;
+		//Reinicia marcação dos pacotes esperando ack
+		scoreboard().clearAllLost();
 				
 		//Caso tenha sido chamado após receber o terceiro ack duplicado, já vai estar no modo fast retransmit - 
-		if (status.equals(ServerStatus.FAST_RETRANSMIT)) {
-			List<PackageModel> eventsToRemove = new ArrayList<PackageModel>();
-			//Adiciona na lista dos perdidos o pacote esperado do ack recebido. Este pacote já foi removido da lista de pacotes enviados no duplicatedAck()
-			waitingPackages.add(nextPackageToSend);
-			for (PackageModel packageModel : sentPackages) {
-				//Se receptor não recebeu pacote que está iterando
-				if (!receivedAckPackages.contains(packageModel)) {
-					//Vai adicionando todos os pacotes enviados que não foram recebidos na lista dos eventos a remover
-					eventsToRemove.add(packageModel);
+		if (flows.getStatus(flowId) == ServerStatus.FAST_RETRANSMIT) {
+			//Marca como perdido o pacote esperado do ack recebido. Este pacote já foi desmarcado como enviado no duplicatedAck()
+			scoreboard().setLost(flows.nextPackageToSend[flowId]);
+			for (long value = scoreboard().getFirstValue(); value < scoreboard().getEndValue(); value += SimulatorProperties.MSS) {
+				//Se receptor não recebeu pacote enviado que está iterando
+				if (scoreboard().isSent(value) && !scoreboard().isSacked(value)) {
+					//Desmarca o pacote como enviado, pois vai ser enviado novamente
+					scoreboard().clearSent(value);
 					//Também cancela o timeout deste pacote
-					cancelTimeout(packageModel);
-					//Adiciona na lista dos pacotes a recuperar
-					waitingPackages.add(packageModel);
+					scoreboard().cancelTimeout(value);
+					//Marca como pacote a recuperar
+					scoreboard().setLost(value);
 				}
 			}
-			//Remove todos os pacotes não recebidos da lista de pacotes enviados, pois vão ser enviados novamente
-			sentPackages.removeAll(eventsToRemove);
-			verifyTimeOut();
 			//Cancela todos os envios pacotes deste servidor
-			cancelAllSentEventsEvent();
+			cancelAllSentEventsEvent(time);
 		} 
 		//Reenvio por timeout
 		else {
-			//Lista de eventos a serem removidos - Envio de pacotes 
-			List<Event> eventsToRemove = new ArrayList<Event>();
-			List<Event> eventBuffer = simulator.getEventBuffer();
-			
-			//Itera sobre eventos de envio ao roteador de pacotes posteriores ao que sofreu timeout
-			for (int i = 0; i < eventBuffer.size(); i++) {
-				Event event = eventBuffer.get(i);
-				if (nextPackageToSend.compareTo(event.getPackageModel()) == -1) {						
-					if (event.getSender().equals(this) && event.getType().equals(EventType.PACKAGE_SENT)) {
-						//Adiciona o evento de envio de pacote à lista de eventos para serem removidos do buffer
-						eventsToRemove.add(event);
-						//Remove pacote da lista de pacotes enviados
-						removeSentPackage(event.getPackageModel());
-						//Cancela o timeout do pacote que esta iterando
-						cancelTimeout(event.getPackageModel());
-					}
-				}
-			}	
-			//Remove eventos da lista de eventos do Simulator
-			eventBuffer.removeAll(eventsToRemove);
+			//Cancela os envios ao roteador de pacotes posteriores ao que sofreu timeout
+			for (long value = flows.nextPackageToSend[flowId] + SimulatorProperties.MSS; value < scoreboard().getEndValue(); value += SimulatorProperties.MSS) {
+				cancelSentEvent(time, value);
+			}
 		}
 		
 		//Atualiza número de pacotes que restam para enviar
-		numOfPackages = getNumOfPackages();
+		flows.numOfPackages[flowId] = getNumOfPackages();
 		//Envia o próximo pacote
-		sendPackage(time, nextPackageToSend);		
+		sendPackage(time, flows.nextPackageToSend[flowId]);		
 
 	}
 	
-	private void verifyTimeOut() {
-		for (PackageModel sentPackage : sentPackages) {
-			Boolean constansTimeoutPackage = false;
-			
-			if (receivedAckPackages.contains(sentPackage)) {
-				continue;
+	/**
+	 * Verifica as invariantes do servidor, usando o índice de timeouts agendados do <code>InvariantChecker</code>.
+	 * <p>
+	 * Todo pacote pendente de confirmação deve estar coberto por um timer de retransmissão agendado, 
+	 * nenhum pacote anterior ao último ACK pode continuar entre os enviados, e o threshold nunca é menor que um MSS.
+	 */
+	private void checkInvariants() {
+		InvariantChecker checker = simulator.getInvariantChecker();
+		
+		if (SimulatorProperties.timeoutMode == TimeoutMode.PER_FLOW) {
+			//Um único timer, armado enquanto houver pacote não confirmado
+			if (checker.armedTimers(this) > 1) {
+				InvariantChecker.fail("mais de um timer de retransmissão em " + this);
 			}
-			
-			List<Event> eventBuffer = simulator.getEventBuffer();
-			
-			for (int i = 0; i < eventBuffer.size(); i++) {
-				Event event = eventBuffer.get(i);
-				if (event.getSender().equals(this) && event.getType().equals(EventType.TIME_OUT) && event.getPackageModel().equals(sentPackage)) {
-					constansTimeoutPackage = true;
-					break;
+			long oldestPackage = getOldestOutstandingPackage();
+			if (oldestPackage >= 0 && checker.armedTimers(this) != 1) {
+				InvariantChecker.fail("pacote " + oldestPackage + " de " + this + " sem timer de retransmissão");
+			}
+		} else {
+			for (long value = scoreboard().getFirstValue(); value < scoreboard().getEndValue(); value += SimulatorProperties.MSS) {
+				if (isOutstanding(value) && !checker.isTimerArmed(this, value)) {
+					InvariantChecker.fail("pacote " + value + " de " + this + " enviado sem timeout");
 				}
 			}
-			
-			if (!constansTimeoutPackage) {
-				throw new RuntimeException("Pacote "+sentPackage+" enviado sem timeout");
+			if (checker.armedTimers(this) != scoreboard().getTimeoutCount()) {
+				InvariantChecker.fail("timeouts de " + this + " diferentes dos agendados");
 			}
-		}		
+		}
+		
+		if (scoreboard().getFirstValue() != flows.lastAck[flowId]) {
+			InvariantChecker.fail("placar de " + this + " não começa no ACK " + flows.lastAck[flowId]);
+		}
+		if (flows.threshold[flowId] < SimulatorProperties.MSS) {
+			InvariantChecker.fail("threshold de " + this + " menor que um MSS");
+		}
 	}
 
 	/**
-	 * Cancela todos os timeouts do pacote passado como parâmetro
-	 * @param packageModel 
+	 * Rearma o timer de retransmissão da conexão para o pacote pendente de confirmação com o menor tempo de timeout, 
+	 * no modo <code>TimeoutMode.PER_FLOW</code>.
+	 * <p>
+	 * Cada pacote guarda o timeout calculado no seu último envio, de forma que o timer vence quando 
+	 * venceria o primeiro dos timeouts individuais dos pacotes pendentes.
+	 * Se não houver pacotes pendentes de confirmação, o timer fica desligado até o próximo envio.
 	 * 
+	 * @param time tempo atual
 	 */
-	private void cancelTimeout(PackageModel packageModel) {
-		List<Event> removedEvents = new ArrayList<Event>();
-		List<Event> eventBuffer = simulator.getEventBuffer();
+	private void rearmRetransmissionTimer(long time) {
+		flows.retransmissionTimers[flowId] = null;
 		
-		for (int i = 0; i < eventBuffer.size(); i++) {
-			Event event = eventBuffer.get(i);
-			if (event.getSender().equals(this) && event.getType().equals(EventType.TIME_OUT) && event.getPackageModel().equals(packageModel)) {
-				removedEvents.add(event);
-				break;
+		boolean found = false;
+		long nextPackage = 0;
+		long nextTimeoutTime = 0;
+		for (long value = scoreboard().getFirstValue(); value < scoreboard().getEndValue(); value += SimulatorProperties.MSS) {
+			if (isOutstanding(value) && (!found || scoreboard().getTimeoutTime(value) < nextTimeoutTime)) {
+				found = true;
+				nextPackage = value;
+				nextTimeoutTime = scoreboard().getTimeoutTime(value);
 			}
-		}	
-		eventBuffer.removeAll(removedEvents);
+		}
+		
+		if (found) {
+			flows.retransmissionTimers[flowId] = simulator.shotEvent(this, this, Math.max(time, nextTimeoutTime), time, EventType.TIME_OUT, nextPackage);
+		}
+	}
+
+	/**
+	 * Reinicia o timer de retransmissão da conexão ao receber um ACK que confirma dados novos, no modo <code>TimeoutMode.PER_FLOW</code>.
+	 * <p>
+	 * O timer passa a vencer um RTO depois do tempo atual, com o RTO já atualizado por este ACK, cobrindo o pacote pendente mais antigo
+	 * (RFC 6298, seção 5.3). Se todos os pacotes enviados tiverem sido confirmados, o timer é desligado (seção 5.2).
+	 * 
+	 * @param time tempo atual
+	 */
+	private void restartRetransmissionTimer(long time) {
+		if (flows.retransmissionTimers[flowId] != null) {
+			simulator.cancelEvent(flows.retransmissionTimers[flowId]);
+			flows.retransmissionTimers[flowId] = null;
+		}
+		
+		long oldestPackage = getOldestOutstandingPackage();
+		if (oldestPackage >= 0) {
+			flows.retransmissionTimers[flowId] = simulator.shotEvent(this, this, getTimeoutTime(time), time, EventType.TIME_OUT, oldestPackage);
+		}
+	}
+
+	/**
+	 * Indica se o pacote foi enviado e ainda não foi recebido pelo receptor
+	 * @param value identificador do pacote
+	 * @return <code>true</code> se o pacote está pendente de confirmação
+	 */
+	private boolean isOutstanding(long value) {
+		return scoreboard().isSent(value) && !scoreboard().isSacked(value);
+	}
+
+	/**
+	 * Retorna o pacote enviado mais antigo que ainda não foi recebido pelo receptor
+	 * @return identificador do pacote mais antigo pendente de confirmação, ou -1 se não houver
+	 */
+	private long getOldestOutstandingPackage() {
+		for (long value = scoreboard().getFirstValue(); value < scoreboard().getEndValue(); value += SimulatorProperties.MSS) {
+			if (isOutstanding(value)) {
+				return value;
+			}
+		}
+		return -1;
 	}
 	
 	/** 
 	 * Cancela os eventos de todos os pacotes enviados por este servidor.
 	 * <p>
 	 * Remove eventos do buffer do Simulator, e também da lista de pacotes enviados, assim como o timeout
+	 * @param time tempo atual
 	 */
-	private void cancelAllSentEventsEvent() {
-		List<Event> removedEvents = new ArrayList<Event>();
-		List<Event> eventBuffer = simulator.getEventBuffer();
-		
-		for (int i = 0; i < eventBuffer.size(); i++) {
-			Event event = eventBuffer.get(i);
-			if (event.getSender().equals(this) && event.getType().equals(EventType.PACKAGE_SENT)) {
-				removedEvents.add(event);
-				removeSentPackage(event.getPackageModel());
-				cancelTimeout(event.getPackageModel());
-			}
-		}	
-		eventBuffer.removeAll(removedEvents);
+	private void cancelAllSentEventsEvent(long time) {
+		for (long value = scoreboard().getFirstValue(); value < scoreboard().getEndValue(); value += SimulatorProperties.MSS) {
+			cancelSentEvent(time, value);
+		}
 	}
 
 	/**
-	 * Remove pacote da lista de pacotes enviados
-	 * @param packageModel pacote a ser removido
-	 */
-	private void removeSentPackage(PackageModel packageModel) {
-		sentPackages.remove(packageModel);
+	 * Cancela o envio do pacote, se o evento de envio ainda não tiver chegado ao roteador.
+	 * Neste caso, desmarca o pacote como enviado e cancela seu timeout.
+	 * <p>
+	 * Se o pacote estiver em um trem, os pacotes seguintes do trem também são cancelados, 
+	 * já que os envios são sempre cancelados do pacote até o fim da janela.
+	 * @param time tempo atual
+	 * @param value identificador do pacote
+	 */
+	private void cancelSentEvent(long time, long value) {
+		Event event = scoreboard().getSentEvent(value);
+		if (event == null || !event.isScheduled() || event.isCancelled()) {
+			return;
+		}
+		if (event.getTime() <= time) {
+			//Na execução sequencial, um envio que chega ao roteador no instante atual já foi tratado, antes dos ACKs e timeouts. 
+			//Na execução paralela, ele ainda pode estar na caixa de saída do processo
+			return;
+		}
+		
+		PackageTrain train = event.getTrain();
+		if (train == null) {
+			simulator.cancelEvent(event);
+			scoreboard().clearSent(value);
+			scoreboard().cancelTimeout(value);
+			return;
+		}
+		
+		int index = train.indexOf(value);
+		if (index < 0) {
+			//Pacote já chegou ao roteador, ou já foi retirado do trem
+			return;
+		}
+		for (int i = index; i < train.size(); i++) {
+			long trainValue = train.getValue(i);
+			scoreboard().clearSent(trainValue);
+			scoreboard().cancelTimeout(trainValue);
+		}
+		if (index == train.getHead()) {
+			simulator.cancelEvent(event);
+		} else {
+			train.truncate(index);
+		}
 	}
 
 	/**
@@ -634,10 +706,9 @@ public class Server implements Listener {
 	 */
 	private void getNextPackage() {
 		
-		//Itera até chegar no primeiro pacote da sequencia que não foi enviado ainda
-		while(sentThisPackage(nextPackageToSend)) {
-			//Cria uma referencia para o próximo pacote, na ordem de envio
-			nextPackageToSend = new PackageModel(nextPackageToSend.getValue() + SimulatorProperties.MSS);
+		//Percorre os pacotes enviados a partir do próximo até chegar no primeiro pacote da sequencia que não foi enviado ainda
+		while (scoreboard().isSent(flows.nextPackageToSend[flowId])) {
+			flows.nextPackageToSend[flowId] += SimulatorProperties.MSS;
 		}
 	}
 
@@ -645,23 +716,16 @@ public class Server implements Listener {
 	 * Retorna tamanho da janela de transmissão em bytes
 	 * @return cwnd
 	 */
-	public Double getCwnd() {
-		return cwnd;
+	public double getCwnd() {
+		return flows.cwnd[flowId];
 	}
 
 	/**
 	 * Substitui tamanho da janela de transmissão
 	 * @param cwnd
 	 */
-	public void setCwnd(Double cwnd) {
-		this.cwnd = cwnd;
-	}
-
-	/**
-	 * Retorna um boolean indicando se o pacote passado por parâmetro já foi enviado
-	 */
-	private boolean sentThisPackage(PackageModel nextPackageToSend) {
-		return sentPackages.contains(nextPackageToSend);
+	public void setCwnd(double cwnd) {
+		flows.cwnd[flowId] = cwnd;
 	}
 
 	/**
@@ -669,11 +733,11 @@ public class Server implements Listener {
 	 * 
 	 */
 	private void setStatus() {
-		if (status != ServerStatus.FAST_RETRANSMIT) {
-			if (cwnd < threshold) {
-				status = ServerStatus.SLOW_START;
+		if (flows.getStatus(flowId) != ServerStatus.FAST_RETRANSMIT) {
+			if (flows.cwnd[flowId] < flows.threshold[flowId]) {
+				flows.setStatus(flowId, ServerStatus.SLOW_START);
 			} else {
-				status = ServerStatus.CONGESTION_AVOIDANCE;
+				flows.setStatus(flowId, ServerStatus.CONGESTION_AVOIDANCE);
 			}
 		}
 	}
@@ -681,14 +745,37 @@ public class Server implements Listener {
 	/**
 	 * Calcula número de pacotes restantes a serem enviados
 	 * <p>
-	 * n = tamanho da janela em pacotes  -  num de pacotes já enviados + num de acks recebidos
+	 * n = tamanho da janela em pacotes  -  num de pacotes já enviados + num de pacotes recebidos fora de ordem
 	 * @return número de pacotes atualizado
 	 */
-	private Integer getNumOfPackages() {
-		Integer value = (int) Math.floor(cwnd/SimulatorProperties.MSS) - sentPackages.size() + receivedAckPackages.size();
+	private int getNumOfPackages() {
+		int value = (int) Math.floor(flows.cwnd[flowId]/SimulatorProperties.MSS) - scoreboard().getSentCount() + scoreboard().getSackedCount();
 		return  Math.max(0, value);
 	}
 
+	/**
+	 * Retorna o placar dos pacotes em trânsito deste servidor, guardado na tabela de fluxos
+	 */
+	private Scoreboard scoreboard() {
+		return flows.scoreboards[flowId];
+	}
+
+	/**
+	 * Retorna o identificador do fluxo TCP deste servidor
+	 * @return flowId
+	 */
+	public int getFlowId() {
+		return flowId;
+	}
+
+	/**
+	 * Retorna a estação receptora conectada a este servidor
+	 * @return receiver
+	 */
+	public Receiver getReceiver() {
+		return receiver;
+	}
+
 	/**
 	 * Retorna o grupo no qual este servidor está inserido.
 	 * 
@@ -699,26 +786,19 @@ public class Server implements Listener {
 	}
 
 	/**
-	 * Retorna lista de pacotes enviados por este servidor
-	 * @return sentPackages
-	 */
-	public Set<PackageModel> getSentPackages() {
-		return sentPackages;
-	}
-
-	/**
-	 * Substitui valor da lista de pacotes enviados por este servidor
-	 * @param sentPackages
+	 * Retorna o placar dos pacotes em trânsito deste servidor
+	 * @return scoreboard
 	 */
-	public void setSentPackages(Set<PackageModel> sentPackages) {
-		this.sentPackages = sentPackages;
+	public Scoreboard getScoreboard() {
+		return scoreboard();
 	}
 
 	/**
-	 * Representação em <code>String</code> de um servidor. 
+	 * Representação em <code>String</code> de um servidor, numerado a partir de 1 pelo fluxo. 
+	 * Servidores do mesmo fluxo em réplicas diferentes da simulação têm a mesma representação.
 	 */
 	@Override
 	public String toString() {
-		return "Servidor "+myId;
+		return "Servidor "+(flowId + 1);
 	}
 }
@@ -14,14 +14,14 @@ public class ServerGroup {
 	/**
 	 * Tempo que um pacote demora desde o momento em que ele sai do servidor, até chegar ao roteador.
 	 */
-	private Long delay;
+	private long delay;
 
 	/**
 	 * Inicializa um grupo de servidores que compartilham o mesmo atraso informado. 
 	 * 
 	 * @param delay atraso que um pacote sofre para ir do servidor até o roteador.
 	 */
-	public ServerGroup(Long delay) {
+	public ServerGroup(long delay) {
 		super();
 		this.delay = delay;
 	}
@@ -31,7 +31,7 @@ public class ServerGroup {
 	 * 
 	 * @return tempo que um pacote demora desde o momento em que ele sai do servidor, até chegar ao roteador.
 	 */
-	public Long getDelay() {
+	public long getDelay() {
 		return delay;
 	}
 
@@ -0,0 +1,70 @@
+package models.interfaces;
+
+import models.Event;
+import models.EventPool;
+
+/**
+ * 
+ * Interface que deverá ser implementada pelas estruturas que guardam a lista de eventos futuros da simulação.
+ * <p>
+ * A ordem de retirada dos eventos segue o <code>Event.compareTo</code>, ou seja, 
+ * o primeiro evento retornado é sempre o próximo que deve acontecer na simulação.
+ * <p>
+ * Eventos cancelados nunca são retornados. Quando são descartados, voltam para o reservatório de eventos da lista, se houver.
+ *
+ * @see Event
+ */
+public interface EventQueue {
+
+	/**
+	 * Insere um evento na lista de eventos futuros.
+	 * 
+	 * @param event evento a ser inserido.
+	 */
+	public void add(Event event);
+	
+	/**
+	 * Retorna, sem remover, o próximo evento que deve acontecer.
+	 * 
+	 * @return próximo evento, ou <code>null</code> caso a lista esteja vazia.
+	 */
+	public Event peek();
+	
+	/**
+	 * Retorna e remove o próximo evento que deve acontecer.
+	 * 
+	 * @return próximo evento, ou <code>null</code> caso a lista esteja vazia.
+	 */
+	public Event poll();
+	
+	/**
+	 * Cancela um evento agendado, para que ele não aconteça.
+	 * <p>
+	 * Caso o evento já tenha acontecido ou já tenha sido cancelado, nada é feito.
+	 * 
+	 * @param event evento a ser cancelado.
+	 * @return <code>true</code> se o evento foi retirado da estrutura imediatamente, 
+	 * <code>false</code> se ele continua guardado até ser descartado, ou se não estava agendado.
+	 */
+	public boolean cancel(Event event);
+	
+	/**
+	 * Define o reservatório para onde voltam os eventos cancelados quando são descartados da estrutura.
+	 * Um evento retido através do <code>Event.retain()</code> não volta, e fica para quem o reteve.
+	 * 
+	 * @param eventPool reservatório de eventos, ou <code>null</code> para apenas descartá-los
+	 */
+	public void setEventPool(EventPool eventPool);
+	
+	/**
+	 * Retorna o número de eventos na lista, sem contar os cancelados.
+	 * @return número de eventos
+	 */
+	public int size();
+	
+	/**
+	 * Indica se a lista de eventos futuros está vazia.
+	 * @return <code>true</code> se não houver eventos
+	 */
+	public boolean isEmpty();
+}
@@ -0,0 +1,130 @@
+package models.queues;
+
+import models.Event;
+import models.EventPool;
+import models.interfaces.EventQueue;
+
+/**
+ * 
+ * Implementação base das listas de eventos futuros, responsável pelo cancelamento de eventos.
+ * <p>
+ * O cancelamento é feito por remoção preguiçosa: o evento cancelado é apenas marcado, em O(1),
+ * e descartado quando chega ao início da lista. Quando os eventos cancelados passam a ser
+ * mais da metade dos eventos guardados, a lista é compactada, removendo todos eles de uma vez.
+ * Nos dois casos, o evento descartado volta para o reservatório de eventos da lista.
+ *
+ * @see EventQueue
+ */
+public abstract class AbstractEventQueue implements EventQueue {
+
+	/**
+	 * Número mínimo de eventos cancelados para que a compactação seja feita.
+	 */
+	private static final int MIN_CANCELLED_TO_PURGE = 64;
+	
+	/**
+	 * Número de eventos cancelados que ainda estão guardados na estrutura.
+	 */
+	private int cancelled;
+	
+	/**
+	 * Reservatório para onde voltam os eventos cancelados descartados, ou <code>null</code>
+	 */
+	private EventPool eventPool;
+
+	@Override
+	public final void add(Event event) {
+		event.setScheduled(true);
+		insert(event);
+	}
+
+	@Override
+	public final Event peek() {
+		Event event = first();
+		while (event != null && event.isCancelled()) {
+			removeFirst();
+			discard(event);
+			cancelled--;
+			event = first();
+		}
+		return event;
+	}
+
+	@Override
+	public final Event poll() {
+		Event event = peek();
+		if (event != null) {
+			removeFirst();
+			event.setScheduled(false);
+		}
+		return event;
+	}
+
+	@Override
+	public final boolean cancel(Event event) {
+		if (event.isScheduled() && !event.isCancelled()) {
+			event.setCancelled(true);
+			cancelled++;
+			
+			if (cancelled > MIN_CANCELLED_TO_PURGE && cancelled > storedSize()/2) {
+				purgeCancelled();
+				cancelled = 0;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public final void setEventPool(EventPool eventPool) {
+		this.eventPool = eventPool;
+	}
+
+	@Override
+	public final int size() {
+		return storedSize() - cancelled;
+	}
+
+	@Override
+	public final boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Marca um evento cancelado, já retirado da estrutura, como não agendado, e o devolve ao reservatório se ninguém o retiver.
+	 * @param event
+	 */
+	protected final void discard(Event event) {
+		event.setScheduled(false);
+		if (eventPool != null) {
+			eventPool.release(event);
+		}
+	}
+	
+	/**
+	 * Insere um evento na estrutura.
+	 * @param event
+	 */
+	protected abstract void insert(Event event);
+	
+	/**
+	 * Retorna o menor evento guardado, cancelado ou não, sem removê-lo.
+	 * @return menor evento, ou <code>null</code> se não houver eventos guardados
+	 */
+	protected abstract Event first();
+	
+	/**
+	 * Remove o menor evento guardado.
+	 */
+	protected abstract void removeFirst();
+	
+	/**
+	 * Retorna o número de eventos guardados, incluindo os cancelados.
+	 * @return número de eventos guardados
+	 */
+	protected abstract int storedSize();
+	
+	/**
+	 * Remove da estrutura todos os eventos cancelados, descartando-os através do <code>discard</code>.
+	 */
+	protected abstract void purgeCancelled();
+}
@@ -0,0 +1,125 @@
+package models.queues;
+
+import java.util.Arrays;
+
+import models.Event;
+import models.interfaces.EventQueue;
+
+/**
+ * 
+ * Lista de eventos futuros implementada como um heap binário mínimo sobre um vetor.
+ * <p>
+ * Inserção e remoção do próximo evento custam O(log n), no lugar de reordenar toda a lista a cada evento.
+ *
+ * @see EventQueue
+ */
+public class BinaryHeapEventQueue extends AbstractEventQueue {
+
+	/**
+	 * Vetor que guarda o heap. O menor evento fica sempre na posição 0.
+	 */
+	private Event[] heap;
+	
+	/**
+	 * Número de eventos no heap.
+	 */
+	private int size;
+
+	/**
+	 * Constrói um heap vazio com capacidade inicial padrão.
+	 */
+	public BinaryHeapEventQueue() {
+		super();
+		heap = new Event[64];
+		size = 0;
+	}
+
+	@Override
+	protected void insert(Event event) {
+		if (size == heap.length) {
+			heap = Arrays.copyOf(heap, 2*heap.length);
+		}
+		heap[size] = event;
+		siftUp(size++);
+	}
+
+	@Override
+	protected Event first() {
+		return size == 0 ? null : heap[0];
+	}
+
+	@Override
+	protected void removeFirst() {
+		size--;
+		heap[0] = heap[size];
+		heap[size] = null;
+		if (size > 0) {
+			siftDown(0);
+		}
+	}
+
+	@Override
+	protected int storedSize() {
+		return size;
+	}
+
+	/**
+	 * Remove os eventos cancelados do vetor e reconstrói o heap em O(n).
+	 */
+	@Override
+	protected void purgeCancelled() {
+		int newSize = 0;
+		for (int i = 0; i < size; i++) {
+			if (heap[i].isCancelled()) {
+				discard(heap[i]);
+			} else {
+				heap[newSize++] = heap[i];
+			}
+		}
+		Arrays.fill(heap, newSize, size, null);
+		size = newSize;
+		
+		for (int i = (size >>> 1) - 1; i >= 0; i--) {
+			siftDown(i);
+		}
+	}
+
+	/**
+	 * Sobe o evento da posição passada até que seu pai seja menor ou igual a ele.
+	 * @param index
+	 */
+	private void siftUp(int index) {
+		Event event = heap[index];
+		while (index > 0) {
+			int parent = (index - 1) >>> 1;
+			if (heap[parent].compareTo(event) <= 0) {
+				break;
+			}
+			heap[index] = heap[parent];
+			index = parent;
+		}
+		heap[index] = event;
+	}
+
+	/**
+	 * Desce o evento da posição passada até que seus filhos sejam maiores ou iguais a ele.
+	 * @param index
+	 */
+	private void siftDown(int index) {
+		Event event = heap[index];
+		int half = size >>> 1;
+		while (index < half) {
+			int child = 2*index + 1;
+			int right = child + 1;
+			if (right < size && heap[right].compareTo(heap[child]) < 0) {
+				child = right;
+			}
+			if (event.compareTo(heap[child]) <= 0) {
+				break;
+			}
+			heap[index] = heap[child];
+			index = child;
+		}
+		heap[index] = event;
+	}
+}
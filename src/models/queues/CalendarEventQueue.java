@@ -0,0 +1,317 @@
+package models.queues;
+
+import models.Event;
+import models.interfaces.EventQueue;
+
+/**
+ * 
+ * Lista de eventos futuros implementada como uma calendar queue (R. Brown, 1988).
+ * <p>
+ * Os eventos são distribuídos em baldes, como os dias de um calendário, cada balde cobrindo um intervalo de tempo
+ * de tamanho <code>width</code>. Um "ano" corresponde a <code>width</code> vezes o número de baldes, e cada balde guarda,
+ * em ordem, os eventos de todos os anos que caem no seu dia.
+ * <p>
+ * Quando o número de eventos cresce ou diminui demais, o número de baldes é dobrado ou dividido pela metade,
+ * e a largura dos baldes é recalculada a partir da separação média entre os próximos eventos.
+ * Com isso, inserção e remoção custam O(1) amortizado.
+ * <p>
+ * Cada balde é uma lista encadeada pelos próprios eventos, através do <code>Event.getQueueNode()</code>, que aponta para o
+ * próximo evento do balde. Assim, inserir um evento não cria nenhum objeto.
+ *
+ * @see EventQueue
+ */
+public class CalendarEventQueue extends AbstractEventQueue {
+
+	/**
+	 * Quantidade de eventos usados como amostra para recalcular a largura dos baldes.
+	 */
+	private static final int SAMPLE_SIZE = 25;
+	
+	/**
+	 * Primeiro e último evento de cada balde do calendário, ou <code>null</code> se o balde estiver vazio. Cada balde é mantido ordenado.
+	 */
+	private Event[] heads;
+	private Event[] tails;
+	
+	/**
+	 * Eventos retirados como amostra para recalcular a largura dos baldes
+	 */
+	private final Event[] sample = new Event[SAMPLE_SIZE];
+	
+	/**
+	 * Intervalo de tempo coberto por cada balde, em nanosegundos.
+	 */
+	private long width;
+	
+	/**
+	 * Número de eventos na fila.
+	 */
+	private int size;
+	
+	/**
+	 * Balde onde está o último evento retirado.
+	 */
+	private int lastBucket;
+	
+	/**
+	 * Limite superior de tempo do balde atual, no ano atual.
+	 */
+	private long bucketTop;
+	
+	/**
+	 * Tempo do último evento retirado. Nenhum evento posterior pode ser menor que ele.
+	 */
+	private long lastTime;
+	
+	/**
+	 * Indica se a fila pode ser redimensionada. Desligado durante a amostragem feita no redimensionamento.
+	 */
+	private boolean resizeEnabled;
+
+	/**
+	 * Constrói uma calendar queue vazia com 2 baldes.
+	 */
+	public CalendarEventQueue() {
+		super();
+		width = 1;
+		lastTime = 0;
+		resizeEnabled = true;
+		heads = new Event[2];
+		tails = new Event[2];
+		setCursor(0);
+	}
+
+	@Override
+	protected void insert(Event event) {
+		insertInBucket(event);
+		size++;
+		
+		if (event.getTime() < lastTime) {
+			setCursor(event.getTime());
+		}
+		
+		if (resizeEnabled && size > 2*heads.length) {
+			resize(2*heads.length);
+		}
+	}
+
+	@Override
+	protected Event first() {
+		if (size == 0) {
+			return null;
+		}
+		return heads[locateNext()];
+	}
+
+	@Override
+	protected void removeFirst() {
+		int bucket = locateNext();
+		Event event = heads[bucket];
+		heads[bucket] = next(event);
+		if (heads[bucket] == null) {
+			tails[bucket] = null;
+		}
+		event.setQueueNode(null);
+		size--;
+		
+		if (resizeEnabled && heads.length > 2 && size < heads.length/2 - 2) {
+			resize(heads.length/2);
+		}
+	}
+
+	@Override
+	protected int storedSize() {
+		return size;
+	}
+
+	@Override
+	protected void purgeCancelled() {
+		for (int bucket = 0; bucket < heads.length; bucket++) {
+			Event event = heads[bucket];
+			heads[bucket] = null;
+			tails[bucket] = null;
+			while (event != null) {
+				Event next = next(event);
+				if (event.isCancelled()) {
+					event.setQueueNode(null);
+					discard(event);
+					size--;
+				} else {
+					append(bucket, event);
+				}
+				event = next;
+			}
+		}
+	}
+
+	/**
+	 * Procura o balde que contém o próximo evento, a partir da posição do último evento retirado.
+	 * <p>
+	 * Percorre no máximo um ano de baldes. Caso nenhum evento seja encontrado no ano atual, 
+	 * faz uma busca direta pelo menor evento entre os primeiros de cada balde.
+	 * 
+	 * @return índice do balde com o próximo evento
+	 */
+	private int locateNext() {
+		int bucket = lastBucket;
+		long top = bucketTop;
+		
+		for (int i = 0; i < heads.length; i++) {
+			Event first = heads[bucket];
+			if (first != null && first.getTime() < top) {
+				lastBucket = bucket;
+				bucketTop = top;
+				lastTime = first.getTime();
+				return bucket;
+			}
+			bucket++;
+			top += width;
+			if (bucket == heads.length) {
+				bucket = 0;
+			}
+		}
+		
+		//Busca direta: nenhum evento no ano atual
+		int minBucket = -1;
+		for (int i = 0; i < heads.length; i++) {
+			if (heads[i] != null && (minBucket < 0 || heads[i].compareTo(heads[minBucket]) < 0)) {
+				minBucket = i;
+			}
+		}
+		setCursor(heads[minBucket].getTime());
+		return minBucket;
+	}
+
+	/**
+	 * Posiciona o cursor do calendário no balde do tempo passado.
+	 * @param time
+	 */
+	private void setCursor(long time) {
+		lastTime = time;
+		lastBucket = bucketOf(time);
+		bucketTop = (time/width + 1)*width;
+	}
+
+	/**
+	 * Insere o evento no seu balde, depois dos eventos menores ou iguais a ele.
+	 * <p>
+	 * Os eventos costumam ser inseridos em ordem, então o fim do balde é verificado antes de percorrê-lo.
+	 * @param event
+	 */
+	private void insertInBucket(Event event) {
+		int bucket = bucketOf(event.getTime());
+		Event tail = tails[bucket];
+		if (tail == null || tail.compareTo(event) <= 0) {
+			append(bucket, event);
+			return;
+		}
+		
+		Event head = heads[bucket];
+		if (event.compareTo(head) < 0) {
+			event.setQueueNode(head);
+			heads[bucket] = event;
+			return;
+		}
+		Event previous = head;
+		while (next(previous).compareTo(event) <= 0) {
+			previous = next(previous);
+		}
+		event.setQueueNode(next(previous));
+		previous.setQueueNode(event);
+	}
+
+	/**
+	 * Acrescenta o evento no fim do balde
+	 * @param bucket índice do balde
+	 * @param event evento maior ou igual aos eventos do balde
+	 */
+	private void append(int bucket, Event event) {
+		event.setQueueNode(null);
+		if (tails[bucket] == null) {
+			heads[bucket] = event;
+		} else {
+			tails[bucket].setQueueNode(event);
+		}
+		tails[bucket] = event;
+	}
+
+	/**
+	 * Retorna o evento seguinte no balde
+	 * @param event
+	 * @return próximo evento, ou <code>null</code> se for o último do balde
+	 */
+	private static Event next(Event event) {
+		return (Event) event.getQueueNode();
+	}
+
+	/**
+	 * Calcula o balde correspondente a um tempo.
+	 * @param time
+	 * @return índice do balde
+	 */
+	private int bucketOf(long time) {
+		return (int) ((time/width) % heads.length);
+	}
+
+	/**
+	 * Redimensiona o calendário para o número de baldes passado, recalculando a largura dos baldes.
+	 * @param newSize novo número de baldes
+	 */
+	private void resize(int newSize) {
+		long newWidth = newWidth();
+		Event[] oldHeads = heads;
+		
+		heads = new Event[newSize];
+		tails = new Event[newSize];
+		width = newWidth;
+		for (Event event : oldHeads) {
+			while (event != null) {
+				Event next = next(event);
+				insertInBucket(event);
+				event = next;
+			}
+		}
+		setCursor(lastTime);
+	}
+
+	/**
+	 * Estima a nova largura dos baldes como 3 vezes a separação média entre os próximos eventos,
+	 * desconsiderando separações maiores que o dobro da média.
+	 * 
+	 * @return nova largura dos baldes
+	 */
+	private long newWidth() {
+		int samples = Math.min(size, SAMPLE_SIZE);
+		if (samples < 2) {
+			return width;
+		}
+		
+		resizeEnabled = false;
+		long savedTime = lastTime;
+		for (int i = 0; i < samples; i++) {
+			sample[i] = first();
+			removeFirst();
+		}
+		for (int i = 0; i < samples; i++) {
+			insert(sample[i]);
+		}
+		setCursor(savedTime);
+		resizeEnabled = true;
+		
+		long totalSeparation = sample[samples - 1].getTime() - sample[0].getTime();
+		double average = (double) totalSeparation/(samples - 1);
+		
+		long separation = 0;
+		int count = 0;
+		for (int i = 1; i < samples; i++) {
+			long difference = sample[i].getTime() - sample[i - 1].getTime();
+			if (difference <= 2*average) {
+				separation += difference;
+				count++;
+			}
+		}
+		
+		long newWidth = count > 0 ? 3*separation/count : 3*(long) average;
+		return Math.max(1, newWidth);
+	}
+}
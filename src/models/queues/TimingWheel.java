@@ -0,0 +1,336 @@
+package models.queues;
+
+import models.Event;
+import models.EventPool;
+import models.interfaces.EventQueue;
+
+/**
+ * 
+ * Roda de temporização hierárquica (Varghese e Lauck, 1987), usada para guardar os timeouts da simulação.
+ * <p>
+ * O tempo é dividido em ticks de tamanho fixo. A roda tem <code>LEVELS</code> níveis de <code>SLOTS</code> posições:
+ * cada posição do nível 0 corresponde a um tick, cada posição do nível 1 a <code>SLOTS</code> ticks, e assim por diante.
+ * Um timer é guardado numa lista duplamente encadeada da posição do seu tick, no nível mais baixo que o comporta,
+ * o que torna a inserção e o cancelamento O(1). Quando o cursor da roda completa uma volta de um nível,
+ * os timers da próxima posição do nível de cima descem para os níveis de baixo.
+ * <p>
+ * Os timers do tick atual são passados para um heap, que os ordena pelo tempo exato, de forma que a roda
+ * retorna os eventos na mesma ordem do <code>Event.compareTo</code>, como qualquer outra lista de eventos futuros.
+ * Como a maioria dos timeouts é cancelada antes de acontecer, eles nunca chegam a esse heap.
+ *
+ * @see EventQueue
+ */
+public class TimingWheel implements EventQueue {
+
+	/**
+	 * Número de bits do índice de cada nível.
+	 */
+	private static final int SLOT_BITS = 8;
+	
+	/**
+	 * Número de posições em cada nível.
+	 */
+	private static final int SLOTS = 1 << SLOT_BITS;
+	
+	/**
+	 * Número de níveis da roda.
+	 */
+	private static final int LEVELS = 4;
+
+	/**
+	 * Nó da lista duplamente encadeada de uma posição da roda.
+	 */
+	private static class TimerNode {
+		private Event event;
+		private long tick;
+		private TimerNode previous;
+		private TimerNode next;
+		private int level;
+		private int slot;
+	}
+
+	/**
+	 * Tamanho de um tick, em nanosegundos.
+	 */
+	private long tickLength;
+	
+	/**
+	 * Primeiro nó da lista de cada posição de cada nível.
+	 */
+	private TimerNode[][] wheel;
+	
+	/**
+	 * Timers que estão além do alcance do último nível.
+	 */
+	private TimerNode overflow;
+	
+	/**
+	 * Número de timers além do alcance da roda.
+	 */
+	private int overflowSize;
+	
+	/**
+	 * Nós que já saíram da roda, reaproveitados pelos próximos timers.
+	 */
+	private TimerNode freeNodes;
+	
+	/**
+	 * Tick atual do cursor. Todos os timers de ticks menores ou iguais a ele já foram passados para <code>ready</code>.
+	 */
+	private long currentTick;
+	
+	/**
+	 * Número de timers guardados na roda, sem contar os já passados para <code>ready</code>.
+	 */
+	private int wheelSize;
+	
+	/**
+	 * Timers que já venceram o tick atual, ordenados pelo tempo exato.
+	 */
+	private EventQueue ready;
+
+	/**
+	 * Constrói uma roda vazia.
+	 * 
+	 * @param tickLength tamanho de um tick, em nanosegundos.
+	 */
+	public TimingWheel(long tickLength) {
+		super();
+		this.tickLength = tickLength;
+		wheel = new TimerNode[LEVELS][SLOTS];
+		currentTick = 0;
+		wheelSize = 0;
+		ready = new BinaryHeapEventQueue();
+	}
+
+	@Override
+	public void add(Event event) {
+		long tick = event.getTime()/tickLength;
+		if (tick <= currentTick) {
+			ready.add(event);
+		} else {
+			TimerNode node = newNode();
+			node.event = event;
+			node.tick = tick;
+			event.setQueueNode(node);
+			event.setScheduled(true);
+			place(node);
+			wheelSize++;
+		}
+	}
+
+	@Override
+	public Event peek() {
+		Event event = ready.peek();
+		while (event == null && wheelSize > 0) {
+			advance();
+			event = ready.peek();
+		}
+		return event;
+	}
+
+	@Override
+	public Event poll() {
+		Event event = peek();
+		if (event != null) {
+			ready.poll();
+		}
+		return event;
+	}
+
+	@Override
+	public boolean cancel(Event event) {
+		TimerNode node = (TimerNode) event.getQueueNode();
+		if (node == null) {
+			return ready.cancel(event);
+		}
+		
+		unlink(node);
+		freeNode(node);
+		wheelSize--;
+		event.setQueueNode(null);
+		event.setScheduled(false);
+		event.setCancelled(true);
+		return true;
+	}
+
+	@Override
+	public void setEventPool(EventPool eventPool) {
+		//Timers cancelados na roda são retirados na hora; só os que já passaram para o heap são descartados depois
+		ready.setEventPool(eventPool);
+	}
+
+	@Override
+	public int size() {
+		return wheelSize + ready.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Avança o cursor em um tick, descendo os timers dos níveis de cima quando um nível completa uma volta,
+	 * e passando os timers do novo tick para o heap de timers vencidos.
+	 */
+	private void advance() {
+		if (overflowSize > 0 && wheelSize == overflowSize) {
+			//Só restam timers além do alcance da roda: pula direto para a volta do último nível que os contém
+			long minTick = Long.MAX_VALUE;
+			for (TimerNode node = overflow; node != null; node = node.next) {
+				minTick = Math.min(minTick, node.tick);
+			}
+			currentTick = Math.max(currentTick, ((minTick >> (SLOT_BITS*LEVELS)) << (SLOT_BITS*LEVELS)) - 1);
+		}
+		
+		currentTick++;
+		
+		int level = 0;
+		while (level < LEVELS - 1 && slotOf(currentTick, level) == 0) {
+			level++;
+			cascade(level, slotOf(currentTick, level));
+		}
+		if (level == LEVELS - 1 && slotOf(currentTick, level) == 0) {
+			cascadeOverflow();
+		}
+		
+		int slot = slotOf(currentTick, 0);
+		TimerNode node = wheel[0][slot];
+		wheel[0][slot] = null;
+		while (node != null) {
+			TimerNode next = node.next;
+			node.event.setQueueNode(null);
+			ready.add(node.event);
+			freeNode(node);
+			wheelSize--;
+			node = next;
+		}
+	}
+
+	/**
+	 * Redistribui os timers de uma posição de um nível nos níveis de baixo.
+	 * @param level
+	 * @param slot
+	 */
+	private void cascade(int level, int slot) {
+		TimerNode node = wheel[level][slot];
+		wheel[level][slot] = null;
+		while (node != null) {
+			TimerNode next = node.next;
+			place(node);
+			node = next;
+		}
+	}
+
+	/**
+	 * Redistribui os timers além do alcance da roda, que podem ter entrado no alcance.
+	 */
+	private void cascadeOverflow() {
+		TimerNode node = overflow;
+		overflow = null;
+		overflowSize = 0;
+		while (node != null) {
+			TimerNode next = node.next;
+			place(node);
+			node = next;
+		}
+	}
+
+	/**
+	 * Insere o nó na posição do nível mais baixo capaz de guardar o seu tick.
+	 * @param node
+	 */
+	private void place(TimerNode node) {
+		long delta = node.tick - currentTick;
+		node.previous = null;
+		
+		if (delta <= 0) {
+			//Tick já atingido pelo cursor
+			node.event.setQueueNode(null);
+			ready.add(node.event);
+			freeNode(node);
+			wheelSize--;
+			return;
+		}
+		
+		for (int level = 0; level < LEVELS; level++) {
+			if (delta < (1l << (SLOT_BITS*(level + 1)))) {
+				int slot = slotOf(node.tick, level);
+				node.level = level;
+				node.slot = slot;
+				node.next = wheel[level][slot];
+				if (node.next != null) {
+					node.next.previous = node;
+				}
+				wheel[level][slot] = node;
+				return;
+			}
+		}
+		
+		node.level = LEVELS;
+		node.next = overflow;
+		if (node.next != null) {
+			node.next.previous = node;
+		}
+		overflow = node;
+		overflowSize++;
+	}
+
+	/**
+	 * Retira o nó da lista em que está.
+	 * @param node
+	 */
+	private void unlink(TimerNode node) {
+		if (node.level == LEVELS) {
+			overflowSize--;
+		}
+		if (node.previous != null) {
+			node.previous.next = node.next;
+		} else if (node.level == LEVELS) {
+			overflow = node.next;
+		} else {
+			wheel[node.level][node.slot] = node.next;
+		}
+		if (node.next != null) {
+			node.next.previous = node.previous;
+		}
+		node.previous = null;
+		node.next = null;
+	}
+
+	/**
+	 * Retorna um nó livre, reaproveitado se houver.
+	 * @return nó sem evento
+	 */
+	private TimerNode newNode() {
+		if (freeNodes == null) {
+			return new TimerNode();
+		}
+		TimerNode node = freeNodes;
+		freeNodes = node.next;
+		node.next = null;
+		return node;
+	}
+
+	/**
+	 * Guarda um nó que saiu da roda para ser reaproveitado.
+	 * @param node
+	 */
+	private void freeNode(TimerNode node) {
+		node.event = null;
+		node.previous = null;
+		node.next = freeNodes;
+		freeNodes = node;
+	}
+
+	/**
+	 * Calcula a posição de um tick em um nível.
+	 * @param tick
+	 * @param level
+	 * @return posição no nível
+	 */
+	private static int slotOf(long tick, int level) {
+		return (int) ((tick >> (SLOT_BITS*level)) & (SLOTS - 1));
+	}
+}